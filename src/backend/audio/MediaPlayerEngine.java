@@ -0,0 +1,155 @@
+package backend.audio;
+
+import java.io.File;
+
+import javafx.collections.ObservableList;
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.media.AudioEqualizer;
+import javafx.scene.media.AudioSpectrumListener;
+import javafx.scene.media.EqualizerBand;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaException;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+/**
+ * MediaPlayerEngine
+ * plays songs with JavaFX's MediaPlayer, which decodes every format JavaFX knows (mp3 included). The three bands
+ * are spread over the player's 10 band equalizer: bands 0-2 are the lows, 3-6 the mids and 7-9 the highs
+ */
+public class MediaPlayerEngine implements PlaybackEngine {
+
+	/*First equalizer band of each of LOW, MID and HIGH, and the end of the last one*/
+	private static final int[] BAND_STARTS = {0, 3, 7, 10};
+
+	/*Equalizer band read as the gain of each of LOW, MID and HIGH*/
+	private static final int[] BAND_READ = {0, 5, 9};
+
+	private MediaPlayer mediaPlayer;
+
+	public MediaPlayerEngine() {
+		// starts the JavaFX runtime if it is not running yet
+		new JFXPanel();
+	}
+
+	@Override
+	public boolean open(File file) {
+		try {
+			mediaPlayer = new MediaPlayer(new Media(file.toURI().toString()));
+			return true;
+		} catch (MediaException e) {
+			System.out.println("ERROR: No such file or directory " + file.getAbsolutePath());
+			return false;
+		}
+	}
+
+	@Override
+	public void close() {
+		if (mediaPlayer != null) {
+			mediaPlayer.dispose();
+			mediaPlayer = null;
+		}
+	}
+
+	@Override
+	public void play() {
+		if (mediaPlayer != null)
+			mediaPlayer.play();
+	}
+
+	@Override
+	public void pause() {
+		if (mediaPlayer != null)
+			mediaPlayer.pause();
+	}
+
+	@Override
+	public void suspend() {
+		// JavaFX manages the player's audio output itself, there is no line to give back
+		pause();
+	}
+
+	@Override
+	public boolean isPlaying() {
+		return mediaPlayer != null && mediaPlayer.getCurrentRate() != 0;
+	}
+
+	@Override
+	public double getRate() {
+		return mediaPlayer == null ? 1 : mediaPlayer.getRate();
+	}
+
+	@Override
+	public void setRate(double rate) {
+		if (mediaPlayer != null)
+			mediaPlayer.setRate(rate);
+	}
+
+	@Override
+	public double getVolume() {
+		return mediaPlayer == null ? 1 : mediaPlayer.getVolume();
+	}
+
+	@Override
+	public void setVolume(double volume) {
+		if (mediaPlayer != null)
+			mediaPlayer.setVolume(volume);
+	}
+
+	@Override
+	public boolean isMute() {
+		return mediaPlayer != null && mediaPlayer.isMute();
+	}
+
+	@Override
+	public void setMute(boolean mute) {
+		if (mediaPlayer != null)
+			mediaPlayer.setMute(mute);
+	}
+
+	@Override
+	public double getGain(int band) {
+		if (mediaPlayer == null)
+			return 0;
+		return mediaPlayer.getAudioEqualizer().getBands().get(BAND_READ[band]).getGain();
+	}
+
+	@Override
+	public void setGain(int band, double gain) {
+		if (mediaPlayer == null)
+			return;
+		AudioEqualizer eq = mediaPlayer.getAudioEqualizer();
+		ObservableList<EqualizerBand> bands = eq.getBands();
+		for (int i = BAND_STARTS[band]; i < BAND_STARTS[band + 1]; i++)
+			bands.get(i).setGain(gain);
+	}
+
+	@Override
+	public int getCurrentTime() {
+		return (int) mediaPlayer.getCurrentTime().toMillis();
+	}
+
+	@Override
+	public int getTotalDuration() {
+		return (int) mediaPlayer.getTotalDuration().toMillis();
+	}
+
+	@Override
+	public void seek(double ms) {
+		mediaPlayer.seek(new Duration(ms));
+	}
+
+	@Override
+	public void setAudioSpectrumListener(AudioSpectrumListener listener) {
+		if (mediaPlayer != null)
+			mediaPlayer.setAudioSpectrumListener(listener);
+	}
+
+	/**
+	 * getMediaPlayer
+	 * @return the player of the current song, null if none could be opened
+	 */
+	public MediaPlayer getMediaPlayer() {
+		return mediaPlayer;
+	}
+}
@@ -0,0 +1,89 @@
+package backend.audio;
+
+import java.io.File;
+
+import javafx.scene.media.AudioSpectrumListener;
+
+/**
+ * PlaybackEngine
+ * what SongApp needs from whatever actually plays the song: transport, position, and the rate, volume and
+ * three band gains the knobs control. One engine plays one song; SongApp opens one per song, the likely next
+ * songs ahead of time.
+ * Engines may be called from any thread
+ */
+public interface PlaybackEngine {
+
+	/*Bands of setGain/getGain*/
+	public static final int LOW = 0;
+	public static final int MID = 1;
+	public static final int HIGH = 2;
+
+	/**
+	 * open
+	 * @param file song to play, paused at the start
+	 * @return false if the engine cannot play the file
+	 */
+	public boolean open(File file);
+
+	/**
+	 * close
+	 * stops playing and releases the song
+	 */
+	public void close();
+
+	public void play();
+
+	public void pause();
+
+	/**
+	 * suspend
+	 * pauses and gives back what only playing needs (e.g. an audio output line), keeping the song open; play takes
+	 * it again. For songs kept ready to be swapped in
+	 */
+	public void suspend();
+
+	/**
+	 * Returns true while the song is actually playing (not paused, not at its end)
+	 */
+	public boolean isPlaying();
+
+	/**
+	 * Rate: 1 is normal speed
+	 */
+	public double getRate();
+
+	public void setRate(double rate);
+
+	/**
+	 * Volume: from 0 (silent) to 1 (full)
+	 */
+	public double getVolume();
+
+	public void setVolume(double volume);
+
+	public boolean isMute();
+
+	public void setMute(boolean mute);
+
+	/**
+	 * Gain of a band (LOW, MID or HIGH) in dB, 0 is flat
+	 */
+	public double getGain(int band);
+
+	public void setGain(int band, double gain);
+
+	/**
+	 * Position and length of the song in milliseconds
+	 */
+	public int getCurrentTime();
+
+	public int getTotalDuration();
+
+	public void seek(double ms);
+
+	/**
+	 * setAudioSpectrumListener
+	 * @param listener receives the spectrum of what is playing about ten times a second, null for none
+	 */
+	public void setAudioSpectrumListener(AudioSpectrumListener listener);
+}
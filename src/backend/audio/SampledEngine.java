@@ -0,0 +1,564 @@
+package backend.audio;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import javafx.scene.media.AudioSpectrumListener;
+import backend.audio.dsp.FrameSource;
+import backend.audio.dsp.ParameterSmoother;
+import backend.audio.dsp.RateProcessor;
+import backend.audio.dsp.SpectrumAnalyzer;
+import backend.audio.dsp.ThreeBandEqualizer;
+import backend.audio.dsp.TimeStretcher;
+import backend.audio.dsp.VarispeedResampler;
+
+/**
+ * SampledEngine
+ * plays songs itself with javax.sound.sampled: the song is decoded to 16 bit PCM and run through its own rate,
+ * equalizer and gain stages in blocks of BLOCK_FRAMES, then written to a SourceDataLine whose buffer is only a
+ * few milliseconds long (-Dleapconductor.audio.buffer=ms), so a changed knob is heard after at most a block plus
+ * that buffer. Every stage works on preallocated buffers on the engine's own thread; the setters only write
+ * volatile fields the next block picks up. Volume, mute, rate and band gains never jump: the engine glides to each
+ * new value, sample by sample for the gain and rate, so controls can be set at any rate without zipper noise.
+ * The rate is played by a TimeStretcher, keeping the pitch, at the quality -Dleapconductor.stretch=fast|normal|high
+ * asks for (normal by default); with -Dleapconductor.stretch=off it is played like a tape, pitch and all.
+ * The output line and the engine thread are only taken by the first play and given back by suspend, so a song
+ * opened ahead of time holds nothing but its decoder; handOff gives the open line to the next song instead, so a
+ * skip does not wait for a new line. A seek while there is no engine thread reopens the decoder right away.
+ * Only formats javax.sound.sampled can decode are played (wav, aiff, au; mp3 needs an mp3 SPI such as mp3spi on
+ * the classpath), open returns false for the others
+ */
+public class SampledEngine implements PlaybackEngine {
+
+	/*Default length of the output line's buffer (ms)*/
+	public static final int DEFAULT_BUFFER_MILLIS = 20;
+
+	/*Frames processed per block*/
+	public static final int BLOCK_FRAMES = 256;
+
+	/*Time constants of the volume and rate glides (s)*/
+	public static final double GAIN_TIME = 0.02;
+	public static final double RATE_TIME = 0.05;
+
+	private final int bufferMillis;
+	private final int stretchQuality;
+
+	private File file;
+	private AudioInputStream stream;
+	private AudioFormat format;
+
+	/*Output line and engine thread while playing or paused, guarded by lock*/
+	private volatile SourceDataLine line;
+	private volatile Thread thread;
+	private int channels;
+	private int frameSize;
+	private float sampleRate;
+	private long totalFrames;
+
+	/*Stages and their buffers (engine thread only)*/
+	private RateProcessor resampler;
+	private ThreeBandEqualizer equalizer;
+	private SpectrumAnalyzer spectrum;
+	private ParameterSmoother gain;
+	private ParameterSmoother speed;
+	private byte[] inBytes;
+	private float[] block;
+	private byte[] outBytes;
+
+	/*Controls, written by any thread*/
+	private volatile double rate = 1;
+	private volatile double volume = 1;
+	private volatile boolean mute = false;
+	private volatile boolean playing = false;
+	private volatile boolean ended = false;
+	private volatile boolean closed = false;
+	private volatile long seekFrame = -1;
+
+	/*Source frame reached by the last block written to the line*/
+	private volatile double played = 0;
+	private long startFrame = 0;
+
+	private final Object lock = new Object();
+
+	public SampledEngine() {
+		this(Integer.getInteger("leapconductor.audio.buffer", DEFAULT_BUFFER_MILLIS),
+				TimeStretcher.parseQuality(System.getProperty("leapconductor.stretch", "normal")));
+	}
+
+	/**
+	 * Constructor
+	 * @param bufferMillis length of the output line's buffer
+	 * @param stretchQuality TimeStretcher quality, -1 to play the rate like a tape instead
+	 */
+	public SampledEngine(int bufferMillis, int stretchQuality) {
+		this.bufferMillis = Math.max(1, bufferMillis);
+		this.stretchQuality = stretchQuality;
+	}
+
+	/**
+	 * Reads whole frames from the decoded stream as floats
+	 */
+	private final FrameSource decoder = new FrameSource() {
+		@Override
+		public int read(float[] buffer, int offset, int frames) {
+			int wanted = Math.min(frames, inBytes.length / frameSize) * frameSize;
+			int read = 0;
+			try {
+				while (read < wanted) {
+					int n = stream.read(inBytes, read, wanted - read);
+					if (n < 0)
+						break;
+					read += n;
+				}
+			} catch (IOException e) {
+				System.out.println("ERROR: could not read " + file.getName() + ": " + e.getMessage());
+			}
+			int samples = read / frameSize * channels;
+			int out = offset * channels;
+			for (int i = 0; i < samples; i++) {
+				int lo = inBytes[2 * i] & 0xff;
+				int hi = inBytes[2 * i + 1];
+				buffer[out + i] = ((hi << 8) | lo) / 32768f;
+			}
+			return samples / channels;
+		}
+	};
+
+	@Override
+	public boolean open(File file) {
+		this.file = file;
+		try {
+			stream = decodedStream(file);
+			format = stream.getFormat();
+			channels = format.getChannels();
+			frameSize = format.getFrameSize();
+			sampleRate = format.getSampleRate();
+			totalFrames = AudioSystem.getAudioFileFormat(file).getFrameLength();
+			if (totalFrames < 0)
+				totalFrames = stream.getFrameLength();
+
+			if (!AudioSystem.isLineSupported(new DataLine.Info(SourceDataLine.class, format))) {
+				System.out.println("ERROR: no audio output line for " + file.getName());
+				release();
+				return false;
+			}
+		} catch (UnsupportedAudioFileException e) {
+			System.out.println("ERROR: javax.sound cannot decode " + file.getName());
+			release();
+			return false;
+		} catch (IOException e) {
+			System.out.println("ERROR: No such file or directory " + file.getAbsolutePath());
+			release();
+			return false;
+		}
+
+		if (stretchQuality < 0)
+			resampler = new VarispeedResampler(channels, BLOCK_FRAMES);
+		else
+			resampler = new TimeStretcher(channels, sampleRate, stretchQuality);
+		equalizer = new ThreeBandEqualizer(channels, sampleRate);
+		spectrum = new SpectrumAnalyzer(channels, sampleRate);
+		gain = new ParameterSmoother(GAIN_TIME, sampleRate, 1e-4, mute ? 0 : volume);
+		speed = new ParameterSmoother(RATE_TIME, sampleRate, 1e-4, rate);
+		inBytes = new byte[BLOCK_FRAMES * frameSize];
+		block = new float[BLOCK_FRAMES * channels];
+		outBytes = new byte[BLOCK_FRAMES * frameSize];
+
+		return true;
+	}
+
+	/**
+	 * Closes the stream of an open that failed
+	 */
+	private void release() {
+		if (stream != null) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+			}
+			stream = null;
+		}
+	}
+
+	/**
+	 * Takes and opens the output line (lock held)
+	 * @return false if there is none to be had
+	 */
+	private boolean openLine() {
+		SourceDataLine l = null;
+		try {
+			l = AudioSystem.getSourceDataLine(format);
+			int bufferBytes = (int) (sampleRate * bufferMillis / 1000) * frameSize;
+			l.open(format, Math.max(bufferBytes, BLOCK_FRAMES * frameSize));
+			line = l;
+			return true;
+		} catch (LineUnavailableException e) {
+			System.out.println("ERROR: no audio output line for " + file.getName() + ": " + e.getMessage());
+		} catch (IllegalArgumentException e) {
+			System.out.println("ERROR: no audio output line for " + file.getName() + ": " + e.getMessage());
+		}
+		if (l != null)
+			l.close();
+		return false;
+	}
+
+	/**
+	 * Opens the file as signed 16 bit little endian PCM
+	 */
+	private static AudioInputStream decodedStream(File file) throws UnsupportedAudioFileException, IOException {
+		AudioInputStream in = AudioSystem.getAudioInputStream(file);
+		AudioFormat format = in.getFormat();
+		if (format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED && format.getSampleSizeInBits() == 16
+				&& !format.isBigEndian())
+			return in;
+		AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+				format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+		try {
+			return AudioSystem.getAudioInputStream(pcm, in);
+		} catch (IllegalArgumentException e) {
+			// no converter to PCM
+			in.close();
+			throw new UnsupportedAudioFileException(e.getMessage());
+		}
+	}
+
+	/**
+	 * The engine thread: decode, process and write blocks to the line while playing, until the engine is closed or
+	 * suspended
+	 */
+	private void playback(SourceDataLine out) {
+		Thread self = Thread.currentThread();
+		try {
+			while (!closed && thread == self) {
+				if (!playing) {
+					synchronized (lock) {
+						while (!playing && !closed && thread == self)
+							lock.wait();
+					}
+					continue;
+				}
+
+				long seek = seekFrame;
+				if (seek >= 0) {
+					seekFrame = -1;
+					moveTo(seek);
+				}
+
+				speed.setTarget(rate);
+				double fromRate = speed.getValue();
+				int frames = resampler.process(decoder, block, BLOCK_FRAMES, fromRate, speed.next(BLOCK_FRAMES));
+				if (frames == 0) {
+					out.drain();
+					ended = true;
+					playing = false;
+					continue;
+				}
+				equalizer.process(block, frames);
+				spectrum.process(block, frames);
+				gain.setTarget(mute ? 0 : volume);
+				double fromGain = gain.getValue();
+				write(out, frames, (float) fromGain, (float) gain.next(frames));
+				played = startFrame + resampler.getConsumed();
+			}
+		} catch (InterruptedException e) {
+			// closed
+		} finally {
+			// the line is closed or handed off by whoever stopped the thread
+			if (closed)
+				release();
+		}
+	}
+
+	/**
+	 * Converts a processed block to 16 bit samples with the gain going linearly from one value to the other and
+	 * writes it to the line
+	 */
+	private void write(SourceDataLine out, int frames, float fromGain, float toGain) {
+		float step = (toGain - fromGain) / frames;
+		float g = fromGain;
+		int i = 0;
+		for (int f = 0; f < frames; f++) {
+			for (int c = 0; c < channels; c++, i++) {
+				float v = block[i] * g;
+				int s = (int) (Math.max(-1f, Math.min(1f, v)) * 32767);
+				outBytes[2 * i] = (byte) s;
+				outBytes[2 * i + 1] = (byte) (s >> 8);
+			}
+			g += step;
+		}
+		out.write(outBytes, 0, i * 2);
+	}
+
+	/**
+	 * Reopens the song at the given source frame (engine thread, or with the lock held while there is none)
+	 */
+	private void moveTo(long frame) {
+		try {
+			stream.close();
+			stream = decodedStream(file);
+			long skip = frame * frameSize;
+			while (skip > 0) {
+				long n = stream.skip(skip);
+				if (n <= 0)
+					break;
+				skip -= n;
+			}
+		} catch (UnsupportedAudioFileException e) {
+			System.out.println("ERROR: javax.sound cannot decode " + file.getName());
+		} catch (IOException e) {
+			System.out.println("ERROR: could not seek in " + file.getName() + ": " + e.getMessage());
+		}
+		SourceDataLine l = line;
+		if (l != null)
+			l.flush();
+		resampler.reset();
+		equalizer.reset();
+		spectrum.reset();
+		startFrame = frame;
+		played = frame;
+		ended = false;
+	}
+
+	@Override
+	public void close() {
+		Thread t;
+		synchronized (lock) {
+			closed = true;
+			playing = false;
+			t = thread;
+			lock.notifyAll();
+		}
+		SourceDataLine l = line;
+		// also wakes the engine thread up if it is blocked writing to the line
+		if (l != null)
+			l.close();
+		// without an engine thread nobody else closes the stream
+		if (t == null)
+			release();
+	}
+
+	@Override
+	public void suspend() {
+		Thread t;
+		SourceDataLine l;
+		synchronized (lock) {
+			playing = false;
+			t = thread;
+			l = line;
+			thread = null;
+			line = null;
+			lock.notifyAll();
+		}
+		if (l == null)
+			return;
+		l.stop();
+		l.close();
+		if (t != null) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * handOff
+	 * suspends the engine like suspend, but gives its output line, stopped and empty, to the next engine instead
+	 * of closing it; the line is closed if the next engine cannot play through it (another format)
+	 * @param next engine switched to
+	 */
+	public void handOff(SampledEngine next) {
+		Thread t;
+		SourceDataLine l;
+		synchronized (lock) {
+			playing = false;
+			t = thread;
+			l = line;
+			thread = null;
+			line = null;
+			lock.notifyAll();
+		}
+		if (l == null)
+			return;
+		l.stop();
+		l.flush();
+		if (t != null) {
+			try {
+				// flushing again wakes the thread up if it started writing another block after the first flush
+				while (t.isAlive()) {
+					t.join(1);
+					l.flush();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (!next.takeLine(l))
+			l.close();
+	}
+
+	/**
+	 * Plays through the line an engine handed off, unless this one has a line already or another format
+	 * @return false if the line was not taken
+	 */
+	private boolean takeLine(SourceDataLine l) {
+		synchronized (lock) {
+			if (closed || format == null || line != null || !l.getFormat().matches(format))
+				return false;
+			line = l;
+			return true;
+		}
+	}
+
+	@Override
+	public void play() {
+		synchronized (lock) {
+			if (closed || format == null)
+				return;
+			if (line == null && !openLine())
+				return;
+			ended = false;
+			line.start();
+			playing = true;
+			if (thread == null) {
+				final SourceDataLine out = line;
+				Thread t = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						playback(out);
+					}
+				}, "Playback " + file.getName());
+				t.setDaemon(true);
+				t.setPriority(Thread.MAX_PRIORITY);
+				thread = t;
+				t.start();
+			}
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public void pause() {
+		playing = false;
+		SourceDataLine l = line;
+		if (l != null)
+			l.stop();
+	}
+
+	@Override
+	public boolean isPlaying() {
+		return playing && !ended;
+	}
+
+	@Override
+	public double getRate() {
+		return rate;
+	}
+
+	@Override
+	public void setRate(double rate) {
+		this.rate = rate;
+	}
+
+	@Override
+	public double getVolume() {
+		return volume;
+	}
+
+	@Override
+	public void setVolume(double volume) {
+		this.volume = Math.max(0, Math.min(1, volume));
+	}
+
+	@Override
+	public boolean isMute() {
+		return mute;
+	}
+
+	@Override
+	public void setMute(boolean mute) {
+		this.mute = mute;
+	}
+
+	@Override
+	public double getGain(int band) {
+		return equalizer == null ? 0 : equalizer.getGain(band);
+	}
+
+	@Override
+	public void setGain(int band, double gain) {
+		if (equalizer != null)
+			equalizer.setGain(band, gain);
+	}
+
+	@Override
+	public int getCurrentTime() {
+		long pending = seekFrame;
+		if (pending >= 0)
+			return millis(pending);
+		SourceDataLine l = line;
+		if (l == null)
+			return millis(played);
+		// what is still in the line's buffer has not been heard yet
+		double buffered = (double) (l.getBufferSize() - l.available()) / frameSize * rate;
+		return millis(Math.max(0, played - buffered));
+	}
+
+	@Override
+	public int getTotalDuration() {
+		return totalFrames < 0 ? 0 : millis(totalFrames);
+	}
+
+	@Override
+	public void seek(double ms) {
+		if (format == null)
+			return;
+		long frame = (long) (Math.max(0, ms) / 1000 * sampleRate);
+		if (totalFrames > 0)
+			frame = Math.min(frame, totalFrames);
+		synchronized (lock) {
+			// no engine thread reads the stream, so it is moved here rather than on the first block played
+			if (thread == null && !closed) {
+				seekFrame = -1;
+				moveTo(frame);
+				return;
+			}
+			seekFrame = frame;
+		}
+	}
+
+	@Override
+	public void setAudioSpectrumListener(AudioSpectrumListener listener) {
+		if (spectrum != null)
+			spectrum.setListener(listener);
+	}
+
+	private int millis(double frames) {
+		return (int) (frames * 1000 / sampleRate);
+	}
+
+	/**
+	 * getBufferMillis
+	 * @return length of the output line's buffer
+	 */
+	public int getBufferMillis() {
+		return bufferMillis;
+	}
+
+	/**
+	 * getStretchQuality
+	 * @return TimeStretcher quality the rate is played at, -1 if it is played like a tape
+	 */
+	public int getStretchQuality() {
+		return stretchQuality;
+	}
+}
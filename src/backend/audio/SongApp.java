@@ -5,37 +5,43 @@ package backend.audio;
  */
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import javafx.collections.ObservableList;
-import javafx.embed.swing.JFXPanel;
-import javafx.scene.media.AudioEqualizer;
 import javafx.scene.media.AudioSpectrumListener;
-import javafx.scene.media.EqualizerBand;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaException;
 import javafx.scene.media.MediaPlayer;
-import javafx.util.Duration;
-
-import org.jaudiotagger.audio.AudioFile;
-
-import backend.FileProcessor;
-import backend.speech.SongsBySpeech;
 
 public class SongApp {
-	private  Media _media;
-	private  MediaPlayer _mediaPlayer;
+	private volatile PlaybackEngine _engine;
+	private AudioSpectrumListener _spectrumListener;
 	private static String _url;
+
+	/*Song of _engine, and songs opened ahead of time (paused at their start) that setSong can swap in at once.
+	  Both are guarded by _warm, which is also held while _engine is swapped; _wanted are the songs the last
+	  preload asked for, _rewind the kept songs preload still has to move back to their start*/
+	private File _file;
+	private final Map<File, PlaybackEngine> _warm = new HashMap<File, PlaybackEngine>();
+	private final Set<File> _rewind = new HashSet<File>();
+	private Set<File> _wanted = new HashSet<File>();
+	private final Object _preloading = new Object();
+
+	/*Engine used for every song: -Dleapconductor.engine=sampled plays through javax.sound.sampled
+	  (see SampledEngine), anything else through JavaFX's MediaPlayer*/
+	private static final boolean SAMPLED = "sampled".equals(System.getProperty("leapconductor.engine"));
+
+	/*How much each step method changes its value*/
+	private static final double RATE_STEP = 0.01;
+	private static final double VOLUME_STEP = 0.01;
+	private static final double BAND_STEP = 0.5;
 	
 	public SongApp(String url) {
-		new JFXPanel();
-		
 		_url = url;
-    	try {
-    		_media = new Media(new File(_url).toURI().toString());
-    		_mediaPlayer = new MediaPlayer(_media);
-    	} catch (MediaException e) {
-    		System.out.println("ERROR: No such file or directory " + url);
-    	}
+		setSong(new File(_url));
 	}
 	
 	
@@ -43,133 +49,102 @@ public class SongApp {
 	 * resets the speed/volume/band gains 
 	 */
 	public void resetValues() {
-		if (_mediaPlayer != null){
-			_mediaPlayer.setRate(1.0);
-			_mediaPlayer.setVolume(1.0); // this is full volumes, the default of MediaPlayer
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 0; i < 10; i ++){
-				bands.get(i).setGain(0.0);
-			}
-			
-		}
+		if (_engine != null)
+			resetValues(_engine);
+	}
+
+	private static void resetValues(PlaybackEngine engine) {
+		engine.setRate(1.0);
+		engine.setVolume(1.0); // this is full volumes, the default of MediaPlayer
+		engine.setGain(PlaybackEngine.LOW, 0.0);
+		engine.setGain(PlaybackEngine.MID, 0.0);
+		engine.setGain(PlaybackEngine.HIGH, 0.0);
 	}
 	
 	
 	/**
-	 * plays the song and creates a new progress bar that runs in its own thread
+	 * plays the song
 	 */
 	public void playSong() {
-		if (_mediaPlayer != null)
-			_mediaPlayer.play();
+		if (_engine != null)
+			_engine.play();
 	}
 	
 	/**
 	 * stops the song
 	 */
 	public void stopSong() {
-		if (_mediaPlayer != null)
-			_mediaPlayer.pause();
+		if (_engine != null)
+			_engine.pause();
 	}
 	
 	/**
 	 * speeds up the song
 	 */
 	public void speedUpSong() {
-		if (_mediaPlayer != null)
-			_mediaPlayer.setRate(_mediaPlayer.getRate() + 0.01);
+		changeSpeed(RATE_STEP);
 	}
 	
 	/**
 	 * slows down the song
 	 */
 	public void slowDownSong() {
-		if (_mediaPlayer != null) {
-			_mediaPlayer.setRate(_mediaPlayer.getRate() - 0.01);
-		}
+		changeSpeed(-RATE_STEP);
 	}
 
 	/**
 	 * increases the volume
 	 */
 	public void volumeUp() {
-		if (_mediaPlayer != null) {
-			_mediaPlayer.setVolume(_mediaPlayer.getVolume() + 0.01);
-		}
+		changeVolume(VOLUME_STEP);
 	}
 	
 	/**
 	 * decreases the volume
 	 */
 	public void volumeDown() {
-		if (_mediaPlayer != null) {
-			_mediaPlayer.setVolume(_mediaPlayer.getVolume() - 0.01);
-		}
+		changeVolume(-VOLUME_STEP);
 	}
 	
 	/**
 	 * changes volume by d
 	 */
 	public void changeVolume(double d) {
-		if (_mediaPlayer != null)
-			_mediaPlayer.setVolume(_mediaPlayer.getVolume() + d);
+		if (_engine != null)
+			_engine.setVolume(_engine.getVolume() + d);
 	}
 	
 	/**
 	 * changes speed by d
 	 */
 	public void changeSpeed(double d) {
-		if (_mediaPlayer != null)
-			_mediaPlayer.setRate(_mediaPlayer.getRate() + d);
+		if (_engine != null)
+			_engine.setRate(_engine.getRate() + d);
 	}
 	
 	/**
 	 * raises gain on bass frequencies
 	 */
 	public void raiseBass() {
-		if (_mediaPlayer != null){
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 0; i < 3; i ++){
-				bands.get(i).setGain(bands.get(i).getGain() + .5);
-			}
-		}
+		changeBass(BAND_STEP);
 	}
 	
 	/**
 	 * lowers gain on bass frequencies
 	 */
 	public void lowerBass() {
-		if (_mediaPlayer != null){
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 0; i < 3; i ++){
-				bands.get(i).setGain(bands.get(i).getGain() - 0.5);
-			}
-		}
+		changeBass(-BAND_STEP);
 	}
 	
 	public void changeBass(double d) {
-		if (_mediaPlayer != null){
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 0; i < 3; i ++){
-				bands.get(i).setGain(bands.get(i).getGain() + d);
-			}
-		}
+		changeGain(PlaybackEngine.LOW, d);
 	}
 	
 	/**
 	 * raises gain on mid frequencies
 	 */
 	public void raiseMid() {
-		if (_mediaPlayer != null){
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 3; i < 7; i ++){
-				bands.get(i).setGain(bands.get(i).getGain() + 0.5);
-			}
-		}
+		changeMid(BAND_STEP);
 	}
 	
 	
@@ -177,75 +152,76 @@ public class SongApp {
 	 * lowers gain on mid frequencies
 	 */
 	public void lowerMid() {
-		if (_mediaPlayer != null){
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 3; i < 7; i ++){
-				bands.get(i).setGain(bands.get(i).getGain() - 0.5);
-			}
-		}
+		changeMid(-BAND_STEP);
 	}
 	
 	public void changeMid(double d) {
-		if (_mediaPlayer != null){
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 3; i < 7; i ++){
-				bands.get(i).setGain(bands.get(i).getGain() + d);
-			}
-		}
+		changeGain(PlaybackEngine.MID, d);
 	}
 	
 	/**
 	 * raises gain on high frequencies
 	 */
 	public void raiseHigh() {
-		if (_mediaPlayer != null){
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 7; i < 10; i ++){
-				bands.get(i).setGain(bands.get(i).getGain() + 0.5);
-			}
-		}
+		changeHigh(BAND_STEP);
 	}
 	
 	/**
 	 * lowers gain on high frequencies
 	 */
 	public void lowerHigh() {
-		if (_mediaPlayer != null){
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 7; i < 10; i ++){
-				bands.get(i).setGain(bands.get(i).getGain() - 0.5);
-			}
-		}
+		changeHigh(-BAND_STEP);
 	}
 	
 	public void changeHigh(double d) {
-		if (_mediaPlayer != null){
-			AudioEqualizer eq = _mediaPlayer.getAudioEqualizer();
-			ObservableList<EqualizerBand> bands = eq.getBands();
-			for(int i = 7; i < 10; i ++){
-				bands.get(i).setGain(bands.get(i).getGain() + d);
-			}
-		}
+		changeGain(PlaybackEngine.HIGH, d);
+	}
+
+	private void changeGain(int band, double d) {
+		if (_engine != null)
+			_engine.setGain(band, _engine.getGain(band) + d);
 	}
 
     /**
      * getMediaPlayer
-     * @return _mediaPlayer
+     * @return the MediaPlayer of the current song, null if it is not played by a MediaPlayer
      */
     public MediaPlayer getMediaPlayer() {
-        return _mediaPlayer;
+        if (_engine instanceof MediaPlayerEngine)
+            return ((MediaPlayerEngine) _engine).getMediaPlayer();
+        return null;
     }
 
+    /**
+     * getEngine
+     * @return engine playing the current song, null if none could be opened
+     */
+    public PlaybackEngine getEngine() {
+        return _engine;
+    }
+
+	/**
+	 * Returns true while the song is playing
+	 */
+	public boolean isPlaying() {
+		return _engine != null && _engine.isPlaying();
+	}
+
+	public void setMute(boolean mute) {
+		if (_engine != null)
+			_engine.setMute(mute);
+	}
+
+	public boolean isMute() {
+		return _engine != null && _engine.isMute();
+	}
+
 	/**
 	 * Returns the total time of the current song as the number of milliseconds
 	 * @return
 	 */
 	public int getTotalDuration() {
-		return (int) _mediaPlayer.getTotalDuration().toMillis();
+		return _engine.getTotalDuration();
 	}
 
 	/**
@@ -253,7 +229,7 @@ public class SongApp {
 	 * @return
 	 */
 	public int getCurrentTime() {
-		return (int) _mediaPlayer.getCurrentTime().toMillis();
+		return _engine.getCurrentTime();
 	}
 	
 	/**
@@ -261,17 +237,16 @@ public class SongApp {
 	 * @param ms
 	 */
 	public void seekTo(double ms){
-		Duration duration = new Duration(ms);
-		_mediaPlayer.seek(duration);
+		_engine.seek(ms);
 	}
 	
     /**
-     * Wrapper for mediaplayer
+     * Wrapper for the engine
      * Provides public access to the rate of the song
      * @return media
      */
     public double getRate() {
-        return _mediaPlayer.getRate();
+        return _engine.getRate();
     }
     
     /**
@@ -279,39 +254,170 @@ public class SongApp {
      * @return
      */
     public double getVolume() {
-    	return _mediaPlayer.getVolume();
+    	return _engine.getVolume();
     }
     
     public double getLows() {
-    	return _mediaPlayer.getAudioEqualizer().getBands().get(0).getGain();
+    	return _engine.getGain(PlaybackEngine.LOW);
     }
     
     public double getMids() {
-    	return _mediaPlayer.getAudioEqualizer().getBands().get(5).getGain();
+    	return _engine.getGain(PlaybackEngine.MID);
     }
     
     public double getHighs() {
-    	return _mediaPlayer.getAudioEqualizer().getBands().get(9).getGain();
+    	return _engine.getGain(PlaybackEngine.HIGH);
     }
     
     /**
-     * Wrapper for mediaplayer
-     * Sets the audio spectrum listener
+     * Wrapper for the engine
+     * Sets the audio spectrum listener, which is kept for the following songs
      * @param asl
      */
     public void setAudioSpectrumListener(AudioSpectrumListener asl) {
-    	_mediaPlayer.setAudioSpectrumListener(asl);
+    	_spectrumListener = asl;
+    	if (_engine != null)
+    		_engine.setAudioSpectrumListener(asl);
     }
     
     /**
-     * Sets the song to be played
+     * Sets the song to be played. A song preloaded before is swapped in without waiting for it to open, and gets
+     * the output line of the song played before when both are played by a SampledEngine. That song is kept paused,
+     * since going back to it is likely, and the next preload moves it back to its start
      */
     public void setSong(File file) {
-    	try {
-    		_media = new Media(file.toURI().toString());
-    		_mediaPlayer = new MediaPlayer(_media);
-    	} catch (MediaException e) {
-    		System.out.println("ERROR: No such file or directory " + file.getAbsolutePath());
+    	PlaybackEngine engine;
+    	boolean rewind;
+    	synchronized (_warm) {
+    		engine = _warm.remove(file);
+    		rewind = _rewind.remove(file);
+    	}
+    	// switched back to before the preload moved it to its start
+    	if (engine != null && rewind)
+    		engine.seek(0);
+    	if (engine == null)
+    		engine = openEngine(file);
+    	if (engine == null)
+    		return;
+
+    	if (_spectrumListener != null)
+    		engine.setAudioSpectrumListener(_spectrumListener);
+    	PlaybackEngine previous;
+    	File previousFile;
+    	synchronized (_warm) {
+    		previous = _engine;
+    		previousFile = _file;
+    		_engine = engine;
+    		_file = file;
+    	}
+
+    	if (previous == null)
+    		return;
+    	if (previous instanceof SampledEngine && engine instanceof SampledEngine)
+    		((SampledEngine) previous).handOff((SampledEngine) engine);
+    	else
+    		previous.suspend();
+    	if (previousFile == null || previousFile.equals(file)) {
+    		previous.close();
+    		return;
+    	}
+    	previous.setAudioSpectrumListener(null);
+    	previous.setMute(false);
+    	resetValues(previous);
+    	PlaybackEngine replaced = previous;
+    	synchronized (_warm) {
+    		// unless another setSong made it the current song again in the meantime
+    		if (!previousFile.equals(_file)) {
+    			replaced = _warm.put(previousFile, previous);
+    			_rewind.add(previousFile);
+    		}
+    	}
+    	if (replaced != null)
+    		replaced.close();
+    }
+
+    /**
+     * Opens the given songs ahead of time, so setSong can start them right away, and releases the songs kept from
+     * before that are not among them; the kept songs setSong switched away from are moved back to their start.
+     * Opening or rewinding a song takes a while, so this is meant to be called in the background
+     * @param files songs likely to be played next
+     */
+    public void preload(List<File> files) {
+    	synchronized (_preloading) {
+    		List<PlaybackEngine> released = new ArrayList<PlaybackEngine>();
+    		Map<File, PlaybackEngine> rewound = new HashMap<File, PlaybackEngine>();
+    		synchronized (_warm) {
+    			_wanted = new HashSet<File>(files);
+    			Iterator<Map.Entry<File, PlaybackEngine>> it = _warm.entrySet().iterator();
+    			while (it.hasNext()) {
+    				Map.Entry<File, PlaybackEngine> entry = it.next();
+    				if (!_wanted.contains(entry.getKey()))
+    					released.add(entry.getValue());
+    				else if (_rewind.contains(entry.getKey()))
+    					rewound.put(entry.getKey(), entry.getValue());
+    				else
+    					continue;
+    				it.remove();
+    			}
+    			_rewind.clear();
+    		}
+    		for (PlaybackEngine engine : released)
+    			engine.close();
+
+    		// out of the map while they are moved, so setSong cannot start one halfway
+    		for (Map.Entry<File, PlaybackEngine> entry : rewound.entrySet()) {
+    			PlaybackEngine engine = entry.getValue();
+    			engine.seek(0);
+    			synchronized (_warm) {
+    				if (!_warm.containsKey(entry.getKey()) && !entry.getKey().equals(_file)
+    						&& _wanted.contains(entry.getKey())) {
+    					_warm.put(entry.getKey(), engine);
+    					engine = null;
+    				}
+    			}
+    			if (engine != null)
+    				engine.close();
+    		}
+
+    		for (File file : files) {
+    			synchronized (_warm) {
+    				if (_warm.containsKey(file) || file.equals(_file))
+    					continue;
+    			}
+    			PlaybackEngine engine = openEngine(file);
+    			if (engine == null)
+    				continue;
+    			synchronized (_warm) {
+    				// setSong may have taken the song meanwhile
+    				if (!_warm.containsKey(file) && !file.equals(_file) && _wanted.contains(file)) {
+    					_warm.put(file, engine);
+    					engine = null;
+    				}
+    			}
+    			if (engine != null)
+    				engine.close();
+    		}
+    	}
+    }
+
+    /**
+     * Opens the song, paused at its start
+     * @return null if no engine can play it
+     */
+    private static PlaybackEngine openEngine(File file) {
+    	PlaybackEngine engine = null;
+    	if (SAMPLED) {
+    		engine = new SampledEngine();
+    		if (!engine.open(file)) {
+    			System.out.println("ERROR: playing " + file.getName() + " with JavaFX instead");
+    			engine = null;
+    		}
+    	}
+    	if (engine == null) {
+    		engine = new MediaPlayerEngine();
+    		if (!engine.open(file))
+    			engine = null;
     	}
+    	return engine;
     }
 }
@@ -0,0 +1,128 @@
+package backend.audio.dsp;
+
+/**
+ * Biquad
+ * a second order IIR filter (low shelf, peaking or high shelf, after the Audio EQ Cookbook) running in place on
+ * interleaved blocks, in transposed direct form II with its state kept per channel.
+ * Setting the same shape again is free: coefficients are only recomputed when the frequency, gain or Q changed
+ */
+public final class Biquad {
+
+	/*Filter shapes*/
+	public static final int LOW_SHELF = 0;
+	public static final int PEAKING = 1;
+	public static final int HIGH_SHELF = 2;
+
+	private final int channels;
+	private final float sampleRate;
+
+	/*Normalized coefficients (a0 = 1)*/
+	private double b0 = 1, b1 = 0, b2 = 0, a1 = 0, a2 = 0;
+
+	/*Shape the coefficients were computed for*/
+	private int type = -1;
+	private double frequency, gain, q;
+
+	/*State per channel*/
+	private final double[] z1;
+	private final double[] z2;
+
+	/**
+	 * Constructor - the filter starts out passing the signal unchanged
+	 * @param channels
+	 * @param sampleRate
+	 */
+	public Biquad(int channels, float sampleRate) {
+		this.channels = channels;
+		this.sampleRate = sampleRate;
+		z1 = new double[channels];
+		z2 = new double[channels];
+	}
+
+	/**
+	 * set
+	 * @param type LOW_SHELF, PEAKING or HIGH_SHELF
+	 * @param frequency corner (shelves) or center (peaking) frequency in Hz
+	 * @param gain in dB
+	 * @param q quality; for the shelves 1/sqrt(2) is the steepest slope without overshoot
+	 * @return true if the coefficients changed
+	 */
+	public boolean set(int type, double frequency, double gain, double q) {
+		if (type == this.type && frequency == this.frequency && gain == this.gain && q == this.q)
+			return false;
+		this.type = type;
+		this.frequency = frequency;
+		this.gain = gain;
+		this.q = q;
+
+		double a = Math.pow(10, gain / 40);
+		double w = 2 * Math.PI * frequency / sampleRate;
+		double cos = Math.cos(w);
+		double alpha = Math.sin(w) / (2 * q);
+		double n0, n1, n2, d0, d1, d2;
+		if (type == PEAKING) {
+			n0 = 1 + alpha * a;
+			n1 = -2 * cos;
+			n2 = 1 - alpha * a;
+			d0 = 1 + alpha / a;
+			d1 = -2 * cos;
+			d2 = 1 - alpha / a;
+		}
+		else {
+			double root = 2 * Math.sqrt(a) * alpha;
+			double sign = type == LOW_SHELF ? 1 : -1;
+			n0 = a * ((a + 1) - sign * (a - 1) * cos + root);
+			n1 = sign * 2 * a * ((a - 1) - sign * (a + 1) * cos);
+			n2 = a * ((a + 1) - sign * (a - 1) * cos - root);
+			d0 = (a + 1) + sign * (a - 1) * cos + root;
+			d1 = -sign * 2 * ((a - 1) + sign * (a + 1) * cos);
+			d2 = (a + 1) + sign * (a - 1) * cos - root;
+		}
+		b0 = n0 / d0;
+		b1 = n1 / d0;
+		b2 = n2 / d0;
+		a1 = d1 / d0;
+		a2 = d2 / d0;
+		return true;
+	}
+
+	/**
+	 * process
+	 * @param buffer interleaved samples, filtered in place
+	 * @param frames
+	 */
+	public void process(float[] buffer, int frames) {
+		process(buffer, 0, frames);
+	}
+
+	/**
+	 * process
+	 * @param buffer interleaved samples, filtered in place
+	 * @param offset first frame to filter
+	 * @param frames
+	 */
+	public void process(float[] buffer, int offset, int frames) {
+		int end = (offset + frames) * channels;
+		for (int c = 0; c < channels; c++) {
+			double s1 = z1[c], s2 = z2[c];
+			for (int i = offset * channels + c; i < end; i += channels) {
+				double x = buffer[i];
+				double y = b0 * x + s1;
+				s1 = b1 * x - a1 * y + s2;
+				s2 = b2 * x - a2 * y;
+				buffer[i] = (float) y;
+			}
+			z1[c] = s1;
+			z2[c] = s2;
+		}
+	}
+
+	/**
+	 * reset
+	 * clears the state, e.g. after a seek
+	 */
+	public void reset() {
+		for (int c = 0; c < channels; c++)
+			z1[c] = z2[c] = 0;
+	}
+}
@@ -0,0 +1,90 @@
+package backend.audio.dsp;
+
+/**
+ * FFT
+ * in-place radix-2 complex fast Fourier transform of one fixed size, with its twiddle factors and bit reversal
+ * computed once so a transform only does arithmetic
+ */
+public final class FFT {
+
+	private final int size;
+	private final int[] reversed;
+	private final double[] cos;
+	private final double[] sin;
+
+	/**
+	 * Constructor
+	 * @param size power of two
+	 */
+	public FFT(int size) {
+		if (size < 2 || Integer.bitCount(size) != 1)
+			throw new IllegalArgumentException("FFT size has to be a power of two: " + size);
+		this.size = size;
+		reversed = new int[size];
+		int bits = Integer.numberOfTrailingZeros(size);
+		for (int i = 0; i < size; i++)
+			reversed[i] = Integer.reverse(i) >>> (32 - bits);
+		cos = new double[size / 2];
+		sin = new double[size / 2];
+		for (int i = 0; i < size / 2; i++) {
+			cos[i] = Math.cos(2 * Math.PI * i / size);
+			sin[i] = -Math.sin(2 * Math.PI * i / size);
+		}
+	}
+
+	/**
+	 * transform
+	 * forward transform, in place
+	 * @param re real parts, size long
+	 * @param im imaginary parts, size long
+	 */
+	public void transform(double[] re, double[] im) {
+		for (int i = 0; i < size; i++) {
+			int j = reversed[i];
+			if (j > i) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+		for (int length = 2; length <= size; length <<= 1) {
+			int half = length >> 1;
+			int step = size / length;
+			for (int start = 0; start < size; start += length) {
+				for (int k = 0; k < half; k++) {
+					double wr = cos[k * step], wi = sin[k * step];
+					int a = start + k, b = a + half;
+					double xr = re[b] * wr - im[b] * wi;
+					double xi = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - xr;
+					im[b] = im[a] - xi;
+					re[a] += xr;
+					im[a] += xi;
+				}
+			}
+		}
+	}
+
+	/**
+	 * inverse
+	 * inverse transform, in place and scaled by 1/size
+	 * @param re
+	 * @param im
+	 */
+	public void inverse(double[] re, double[] im) {
+		for (int i = 0; i < size; i++)
+			im[i] = -im[i];
+		transform(re, im);
+		for (int i = 0; i < size; i++) {
+			re[i] /= size;
+			im[i] = -im[i] / size;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+}
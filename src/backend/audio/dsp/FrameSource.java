@@ -0,0 +1,17 @@
+package backend.audio.dsp;
+
+/**
+ * FrameSource
+ * supplies interleaved float audio (-1 to 1) to a processing stage that pulls its input
+ */
+public interface FrameSource {
+
+	/**
+	 * read
+	 * @param buffer interleaved samples
+	 * @param offset frame of the buffer to start at
+	 * @param frames most frames to read
+	 * @return frames read, 0 at the end of the audio
+	 */
+	public int read(float[] buffer, int offset, int frames);
+}
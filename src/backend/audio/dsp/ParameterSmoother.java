@@ -0,0 +1,77 @@
+package backend.audio.dsp;
+
+/**
+ * ParameterSmoother
+ * glides a control value (gain, rate, band level) toward its target with a one-pole lowpass that is advanced once
+ * per block; within the block the caller interpolates linearly from getValue() before next() to the value next()
+ * returns, so the control follows a continuous curve however large and frequent the target's jumps are. Once it is
+ * within epsilon of the target it snaps to it and costs nothing more. Audio thread only
+ */
+public final class ParameterSmoother {
+
+	/*Remaining distance to the target after one frame*/
+	private final double decay;
+	private final double epsilon;
+
+	private double value;
+	private double target;
+
+	/**
+	 * Constructor
+	 * @param time seconds to cover about 63% of a jump
+	 * @param sampleRate frames per second
+	 * @param epsilon distance from the target at which the value snaps to it
+	 * @param initial starting value and target
+	 */
+	public ParameterSmoother(double time, float sampleRate, double epsilon, double initial) {
+		decay = Math.exp(-1 / (time * sampleRate));
+		this.epsilon = epsilon;
+		value = target = initial;
+	}
+
+	public void setTarget(double target) {
+		this.target = target;
+	}
+
+	public double getTarget() {
+		return target;
+	}
+
+	/**
+	 * getValue
+	 * @return value reached at the end of the last block
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * isSmoothing
+	 * @return true while the value has not reached the target
+	 */
+	public boolean isSmoothing() {
+		return value != target;
+	}
+
+	/**
+	 * next
+	 * @param frames length of the block
+	 * @return value at the end of the block
+	 */
+	public double next(int frames) {
+		if (value == target)
+			return value;
+		value = target + (value - target) * Math.pow(decay, frames);
+		if (Math.abs(value - target) < epsilon)
+			value = target;
+		return value;
+	}
+
+	/**
+	 * jump
+	 * takes the target at once, e.g. when the audio before and after is not continuous anyway
+	 */
+	public void jump() {
+		value = target;
+	}
+}
@@ -0,0 +1,37 @@
+package backend.audio.dsp;
+
+/**
+ * RateProcessor
+ * a stage that plays its source faster or slower, pulling as many source frames as the rate needs
+ */
+public interface RateProcessor {
+
+	/*Rates a processor accepts, others are clamped*/
+	public static final double MIN_RATE = 0.05;
+	public static final double MAX_RATE = 4;
+
+	/**
+	 * process
+	 * plays the block with the rate going linearly from one value to the other, so a rate change glides instead
+	 * of stepping
+	 * @param source audio to play
+	 * @param output interleaved output samples
+	 * @param frames output frames wanted
+	 * @param fromRate source frames per output frame at the start of the block
+	 * @param toRate source frames per output frame at the end of the block
+	 * @return frames written, less than asked for only at the end of the source
+	 */
+	public int process(FrameSource source, float[] output, int frames, double fromRate, double toRate);
+
+	/**
+	 * reset
+	 * forgets the buffered source frames, after the source was moved (seek)
+	 */
+	public void reset();
+
+	/**
+	 * getConsumed
+	 * @return source frames played since the last reset, including the fraction of the current frame
+	 */
+	public double getConsumed();
+}
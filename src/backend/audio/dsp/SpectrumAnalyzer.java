@@ -0,0 +1,105 @@
+package backend.audio.dsp;
+
+import javafx.scene.media.AudioSpectrumListener;
+
+/**
+ * SpectrumAnalyzer
+ * feeds an AudioSpectrumListener the way MediaPlayer does: every interval, the magnitudes (dB, at least the
+ * threshold) and phases of BANDS equally wide bands from 0 Hz to half the sample rate, over the latest samples
+ * (mixed to mono, Hann windowed). Buffers are preallocated and the listener is called on the audio thread
+ */
+public final class SpectrumAnalyzer {
+
+	/*Same defaults as MediaPlayer*/
+	public static final int BANDS = 128;
+	public static final double INTERVAL = 0.1;
+	public static final float THRESHOLD = -60;
+
+	private static final int SIZE = 2 * BANDS;
+
+	private final int channels;
+	private final float sampleRate;
+	private final int intervalFrames;
+
+	private final float[] history = new float[SIZE];
+	private int written = 0;
+	private long frames = 0;
+	private long nextUpdate;
+
+	private final FFT fft = new FFT(SIZE);
+	private final float[] window = new float[SIZE];
+	private final double[] re = new double[SIZE];
+	private final double[] im = new double[SIZE];
+	private final float[] magnitudes = new float[BANDS];
+	private final float[] phases = new float[BANDS];
+
+	private volatile AudioSpectrumListener listener;
+
+	/**
+	 * Constructor
+	 * @param channels
+	 * @param sampleRate
+	 */
+	public SpectrumAnalyzer(int channels, float sampleRate) {
+		this.channels = channels;
+		this.sampleRate = sampleRate;
+		intervalFrames = (int) (INTERVAL * sampleRate);
+		nextUpdate = intervalFrames;
+		for (int i = 0; i < SIZE; i++)
+			window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (SIZE - 1)));
+	}
+
+	public void setListener(AudioSpectrumListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * process
+	 * takes in a block of played samples, calling the listener if an interval is over
+	 * @param buffer interleaved samples
+	 * @param count frames in the buffer
+	 */
+	public void process(float[] buffer, int count) {
+		AudioSpectrumListener l = listener;
+		if (l == null) {
+			frames += count;
+			nextUpdate = frames + intervalFrames;
+			return;
+		}
+		for (int f = 0; f < count; f++) {
+			float sum = 0;
+			for (int c = 0; c < channels; c++)
+				sum += buffer[f * channels + c];
+			history[written] = sum / channels;
+			written = (written + 1) & (SIZE - 1);
+			if (++frames >= nextUpdate) {
+				nextUpdate += intervalFrames;
+				analyze();
+				l.spectrumDataUpdate(frames / sampleRate, INTERVAL, magnitudes, phases);
+			}
+		}
+	}
+
+	private void analyze() {
+		for (int i = 0; i < SIZE; i++) {
+			re[i] = history[(written + i) & (SIZE - 1)] * window[i];
+			im[i] = 0;
+		}
+		fft.transform(re, im);
+		for (int b = 0; b < BANDS; b++) {
+			double magnitude = Math.sqrt(re[b] * re[b] + im[b] * im[b]) * 4 / SIZE;
+			float db = (float) (20 * Math.log10(magnitude + 1e-12));
+			magnitudes[b] = Math.max(THRESHOLD, db);
+			phases[b] = (float) Math.atan2(im[b], re[b]);
+		}
+	}
+
+	/**
+	 * reset
+	 * forgets the samples, after a seek
+	 */
+	public void reset() {
+		for (int i = 0; i < SIZE; i++)
+			history[i] = 0;
+	}
+}
@@ -0,0 +1,145 @@
+package backend.audio.dsp;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * StretchBenchmark
+ * measures the real-time factor of every rate stage (tape varispeed and each TimeStretcher quality) at rates from
+ * 0.5 to 2: the processing time divided by the length of the audio produced, so 0.01 means one percent of a CPU
+ * for playback. The source is a synthetic stereo song (chords, a bass line, drum hits and noise) looped forever,
+ * played in blocks of the sampled engine's size after a warmup. Allocation per block is printed too
+ * usage: StretchBenchmark [seconds of output per case] [sample rate]
+ */
+public class StretchBenchmark {
+
+	public static final double[] RATES = {0.5, 0.75, 1, 1.25, 1.5, 2};
+
+	private static final int CHANNELS = 2;
+	private static final int BLOCK_FRAMES = 256;
+	private static final double SONG_SECONDS = 10;
+	private static final double WARMUP_SECONDS = 30;
+
+	/*Output of the benchmarked stages ends up here so the JIT cannot drop the work*/
+	private static double sink;
+
+	private final float sampleRate;
+	private final float[] song;
+	private final float[] block = new float[BLOCK_FRAMES * CHANNELS];
+	private final com.sun.management.ThreadMXBean allocations;
+
+	/**
+	 * Reads the song in a loop
+	 */
+	private final FrameSource source = new FrameSource() {
+		private int next = 0;
+
+		@Override
+		public int read(float[] buffer, int offset, int frames) {
+			int n = Math.min(frames, song.length / CHANNELS - next);
+			System.arraycopy(song, next * CHANNELS, buffer, offset * CHANNELS, n * CHANNELS);
+			next = (next + n) % (song.length / CHANNELS);
+			return n;
+		}
+	};
+
+	/**
+	 * Constructor
+	 * @param sampleRate
+	 */
+	public StretchBenchmark(float sampleRate) {
+		this.sampleRate = sampleRate;
+		song = syntheticSong(sampleRate);
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported())
+			allocations = (com.sun.management.ThreadMXBean) threads;
+		else
+			allocations = null;
+	}
+
+	/**
+	 * run
+	 * warms the stage up at the rate, then plays the given length of output through it and prints the result
+	 * @param name printed with the result
+	 * @param stage
+	 * @param rate
+	 * @param seconds output measured
+	 */
+	public void run(String name, RateProcessor stage, double rate, double seconds) {
+		stage.reset();
+		play(stage, rate, (int) (WARMUP_SECONDS * sampleRate / BLOCK_FRAMES));
+
+		int blocks = (int) (seconds * sampleRate / BLOCK_FRAMES);
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = allocations == null ? 0 : allocations.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		play(stage, rate, blocks);
+		long nanos = System.nanoTime() - start;
+		long bytes = allocations == null ? 0 : allocations.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+		double audioNanos = (double) blocks * BLOCK_FRAMES / sampleRate * 1e9;
+		String allocated = allocations == null ? "n/a" : String.format("%.1f", (double) bytes / blocks);
+		System.out.println(String.format("%-16s rate %4.2f %10.5f real-time factor %8.1fx real time %10s B/block",
+				name, rate, nanos / audioNanos, audioNanos / nanos, allocated));
+	}
+
+	private void play(RateProcessor stage, double rate, int blocks) {
+		for (int b = 0; b < blocks; b++) {
+			int frames = stage.process(source, block, BLOCK_FRAMES, rate, rate);
+			sink += block[frames * CHANNELS / 2];
+		}
+	}
+
+	/**
+	 * syntheticSong
+	 * @return SONG_SECONDS of interleaved stereo: a chord change every second, a bass note and a drum hit every
+	 * half second, and a little noise
+	 */
+	private static float[] syntheticSong(float sampleRate) {
+		int frames = (int) (SONG_SECONDS * sampleRate);
+		float[] song = new float[frames * CHANNELS];
+		double[][] chords = {{261.6, 329.6, 392.0}, {220.0, 261.6, 329.6}, {174.6, 220.0, 261.6}, {196.0, 246.9, 293.7}};
+		Random random = new Random(42);
+		for (int f = 0; f < frames; f++) {
+			double t = f / sampleRate;
+			double[] chord = chords[(int) t % chords.length];
+			double beat = t % 0.5;
+			double left = 0, right = 0;
+			for (int i = 0; i < chord.length; i++) {
+				double tone = Math.sin(2 * Math.PI * chord[i] * t) + 0.3 * Math.sin(4 * Math.PI * chord[i] * t);
+				left += tone * (i == 0 ? 0.12 : 0.08);
+				right += tone * (i == 2 ? 0.12 : 0.08);
+			}
+			double bass = 0.2 * Math.sin(2 * Math.PI * chord[0] / 4 * t) * Math.exp(-3 * beat);
+			double drum = 0.3 * Math.sin(2 * Math.PI * 60 * beat) * Math.exp(-30 * beat)
+					+ 0.05 * random.nextGaussian() * Math.exp(-60 * beat);
+			double noise = 0.005 * random.nextGaussian();
+			song[f * CHANNELS] = (float) (left + bass + drum + noise);
+			song[f * CHANNELS + 1] = (float) (right + bass + drum + noise);
+		}
+		return song;
+	}
+
+	/**
+	 * main
+	 * @param args optional seconds of output per case (default 20) and sample rate (default 44100)
+	 */
+	public static void main(String[] args) {
+		double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 20;
+		float sampleRate = args.length > 1 ? Float.parseFloat(args[1]) : 44100;
+		System.out.println(String.format("%.0f Hz stereo, blocks of %d frames, %.0f s warmup and %.0f s measured "
+				+ "output per case", sampleRate, BLOCK_FRAMES, WARMUP_SECONDS, seconds));
+
+		StretchBenchmark benchmark = new StretchBenchmark(sampleRate);
+		for (double rate : RATES)
+			benchmark.run("varispeed", new VarispeedResampler(CHANNELS, BLOCK_FRAMES), rate, seconds);
+		for (int quality = TimeStretcher.FAST; quality <= TimeStretcher.HIGH; quality++) {
+			TimeStretcher stretcher = new TimeStretcher(CHANNELS, sampleRate, quality);
+			for (double rate : RATES)
+				benchmark.run("wsola " + TimeStretcher.getQualityName(quality), stretcher, rate, seconds);
+		}
+		System.out.println("checksum " + sink);
+	}
+}
@@ -0,0 +1,104 @@
+package backend.audio.dsp;
+
+/**
+ * ThreeBandEqualizer
+ * the Low/Mid/High knobs as three biquads in series, in place on interleaved blocks: a low shelf, a peaking filter
+ * and a high shelf. A gain change glides to the new gain over about GAIN_TIME, recomputing that band's coefficients
+ * every RAMP_FRAMES while it does, so stepping or dragging a knob does not zipper; a settled band keeps its
+ * coefficients, a band at 0 dB is skipped, and nothing is allocated after construction
+ */
+public final class ThreeBandEqualizer {
+
+	/*Low shelf corner, mid center and high shelf corner (Hz)*/
+	public static final double LOW_FREQUENCY = 250;
+	public static final double MID_FREQUENCY = 1000;
+	public static final double HIGH_FREQUENCY = 4000;
+
+	/*Shelf Q (steepest slope without overshoot) and mid Q (about two octaves wide)*/
+	private static final double SHELF_Q = 1 / Math.sqrt(2);
+	private static final double MID_Q = 0.7;
+
+	private static final int[] TYPES = {Biquad.LOW_SHELF, Biquad.PEAKING, Biquad.HIGH_SHELF};
+	private static final double[] FREQUENCIES = {LOW_FREQUENCY, MID_FREQUENCY, HIGH_FREQUENCY};
+	private static final double[] QS = {SHELF_Q, MID_Q, SHELF_Q};
+
+	/*Time constant of the gain glide (s) and frames between coefficient updates while gliding*/
+	public static final double GAIN_TIME = 0.03;
+	public static final int RAMP_FRAMES = 32;
+
+	/*Gain change (dB) too small to hear, at which a glide ends*/
+	private static final double GAIN_EPSILON = 0.01;
+
+	private final Biquad[] bands = new Biquad[3];
+
+	/*Gain each band is gliding to and has reached (audio thread only)*/
+	private final ParameterSmoother[] gains = new ParameterSmoother[3];
+
+	/*Band gains in dB, written by any thread and picked up at the next block*/
+	private volatile double lowGain = 0, midGain = 0, highGain = 0;
+
+	/**
+	 * Constructor
+	 * @param channels
+	 * @param sampleRate
+	 */
+	public ThreeBandEqualizer(int channels, float sampleRate) {
+		for (int b = 0; b < bands.length; b++) {
+			bands[b] = new Biquad(channels, sampleRate);
+			bands[b].set(TYPES[b], FREQUENCIES[b], 0, QS[b]);
+			gains[b] = new ParameterSmoother(GAIN_TIME, sampleRate, GAIN_EPSILON, 0);
+		}
+	}
+
+	/**
+	 * process
+	 * @param buffer interleaved samples, equalized in place
+	 * @param frames
+	 */
+	public void process(float[] buffer, int frames) {
+		for (int b = 0; b < bands.length; b++) {
+			ParameterSmoother gain = gains[b];
+			gain.setTarget(getGain(b));
+			if (!gain.isSmoothing()) {
+				if (gain.getValue() != 0)
+					bands[b].process(buffer, frames);
+				continue;
+			}
+			if (gain.getValue() == 0)
+				// the band was skipped, its state is stale
+				bands[b].reset();
+			for (int done = 0; done < frames; done += RAMP_FRAMES) {
+				int n = Math.min(RAMP_FRAMES, frames - done);
+				bands[b].set(TYPES[b], FREQUENCIES[b], gain.next(n), QS[b]);
+				bands[b].process(buffer, done, n);
+			}
+		}
+	}
+
+	/**
+	 * reset
+	 * clears the filter state, after a seek
+	 */
+	public void reset() {
+		for (Biquad band : bands)
+			band.reset();
+	}
+
+	/**
+	 * setGain
+	 * @param band PlaybackEngine.LOW, MID or HIGH
+	 * @param gain in dB
+	 */
+	public void setGain(int band, double gain) {
+		if (band == 0)
+			lowGain = gain;
+		else if (band == 1)
+			midGain = gain;
+		else
+			highGain = gain;
+	}
+
+	public double getGain(int band) {
+		return band == 0 ? lowGain : band == 1 ? midGain : highGain;
+	}
+}
@@ -0,0 +1,295 @@
+package backend.audio.dsp;
+
+import java.util.Arrays;
+
+/**
+ * TimeStretcher
+ * plays its source faster or slower without changing the pitch, by WSOLA (waveform similarity overlap-add): the
+ * output is the overlap-add of Hann windowed source segments a hop apart. Each segment is taken the hop times the
+ * rate further into the source, then moved by up to the search range to where it best continues the previous
+ * segment (largest normalized cross-correlation of the mono mix, computed with an FFT), so the overlapping
+ * waveforms stay in phase. The quality sets the segment length, search range and overlap, trading CPU for
+ * fidelity. Every buffer is allocated by the constructor
+ */
+public final class TimeStretcher implements RateProcessor {
+
+	/*Quality levels*/
+	public static final int FAST = 0;
+	public static final int NORMAL = 1;
+	public static final int HIGH = 2;
+
+	private static final String[] QUALITY_NAMES = {"fast", "normal", "high"};
+
+	/*Segment length (ms), search range (ms) and segments overlapping each output frame, per quality*/
+	private static final double[] SEGMENT_MILLIS = {20, 30, 40};
+	private static final double[] SEARCH_MILLIS = {4, 8, 12};
+	private static final int[] OVERLAPS = {2, 2, 4};
+
+	private final int channels;
+	private final int quality;
+	private final int overlaps;
+	private final int length;
+	private final int hop;
+	private final int search;
+
+	/*Frames the correlation compares: the part of a segment that overlaps the previous ones*/
+	private final int compared;
+
+	/*Hann window, scaled so the overlapping windows add up to one*/
+	private final float[] window;
+
+	/*Source frames, from the earliest one a segment can still need*/
+	private final float[] input;
+	private int available = 0;
+	private boolean ended = false;
+	private int end = Integer.MAX_VALUE;
+	private long dropped = 0;
+
+	/*Nominal start of the next segment and start of the last one taken, in the input buffer*/
+	private double position = 0;
+	private int previous = -1;
+
+	/*Nominal source frame and rate of the last segment, for getConsumed*/
+	private double segmentStart = 0;
+	private double segmentRate = 1;
+
+	/*Segments taken entirely after the end of the source*/
+	private int silent = 0;
+
+	/*Overlap-add of the segments: the first hop frames are complete, the last ready of those not played yet*/
+	private final float[] sum;
+	private int ready = 0;
+
+	/*Correlation buffers*/
+	private final FFT fft;
+	private final double[] re;
+	private final double[] im;
+	private final float[] mix;
+
+	/**
+	 * Constructor
+	 * @param channels
+	 * @param sampleRate
+	 * @param quality FAST, NORMAL or HIGH
+	 */
+	public TimeStretcher(int channels, float sampleRate, int quality) {
+		if (quality < FAST || quality > HIGH)
+			throw new IllegalArgumentException("no such time stretch quality: " + quality);
+		this.channels = channels;
+		this.quality = quality;
+		overlaps = OVERLAPS[quality];
+		hop = Math.max(1, (int) Math.round(SEGMENT_MILLIS[quality] / 1000 * sampleRate / overlaps));
+		length = hop * overlaps;
+		search = (int) Math.round(SEARCH_MILLIS[quality] / 1000 * sampleRate);
+		compared = length - hop;
+
+		window = new float[length];
+		for (int i = 0; i < length; i++)
+			window[i] = (float) ((0.5 - 0.5 * Math.cos(2 * Math.PI * i / length)) * 2 / overlaps);
+
+		int capacity = length + 4 * search + (int) Math.ceil(hop * MAX_RATE) + 4;
+		input = new float[capacity * channels];
+		sum = new float[length * channels];
+
+		int span = compared + 2 * search;
+		fft = new FFT(Integer.highestOneBit(span) == span ? span : Integer.highestOneBit(span) << 1);
+		re = new double[fft.size()];
+		im = new double[fft.size()];
+		mix = new float[span];
+	}
+
+	@Override
+	public int process(FrameSource source, float[] output, int frames, double fromRate, double toRate) {
+		int written = 0;
+		while (written < frames) {
+			if (ready == 0) {
+				double rate = fromRate + (toRate - fromRate) * written / frames;
+				if (!nextSegment(source, Math.max(MIN_RATE, Math.min(MAX_RATE, rate))))
+					break;
+			}
+			int n = Math.min(ready, frames - written);
+			System.arraycopy(sum, (hop - ready) * channels, output, written * channels, n * channels);
+			ready -= n;
+			written += n;
+			if (ready == 0) {
+				// the hop is played, move the unfinished frames to the front
+				System.arraycopy(sum, hop * channels, sum, 0, compared * channels);
+				Arrays.fill(sum, compared * channels, length * channels, 0f);
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Adds the next segment to the overlap-add
+	 * @return false once the output is silent after the end of the source
+	 */
+	private boolean nextSegment(FrameSource source, double rate) {
+		if (silent >= overlaps)
+			return false;
+		int p = (int) Math.round(position);
+		int lo = Math.max(0, p - search);
+		int hi = p + search;
+		// the natural continuation of the previous segment, the new one should look like it
+		int continuation = previous < 0 ? -1 : previous + hop;
+
+		int from = continuation < 0 ? lo : Math.min(lo, continuation);
+		if (from > 0)
+			drop(from);
+		p -= from;
+		lo -= from;
+		hi -= from;
+		if (continuation >= 0)
+			continuation -= from;
+		fill(source, Math.max(hi, continuation) + length);
+
+		int start = continuation < 0 ? p : bestStart(lo, hi, continuation);
+		for (int f = 0, i = start * channels; f < length; f++) {
+			float w = window[f];
+			for (int c = 0; c < channels; c++, i++)
+				sum[f * channels + c] += w * input[i];
+		}
+		previous = start;
+		if (start >= end)
+			silent++;
+
+		segmentStart = dropped + position;
+		segmentRate = rate;
+		position += hop * rate;
+		ready = hop;
+		return true;
+	}
+
+	/**
+	 * Forgets the first frames of the input buffer
+	 */
+	private void drop(int frames) {
+		System.arraycopy(input, frames * channels, input, 0, (available - frames) * channels);
+		available -= frames;
+		position -= frames;
+		if (previous >= 0)
+			previous -= frames;
+		if (end != Integer.MAX_VALUE)
+			end -= frames;
+		dropped += frames;
+	}
+
+	/**
+	 * Reads the source up to the given frame of the input buffer, with silence after its end
+	 */
+	private void fill(FrameSource source, int needed) {
+		while (available < needed && !ended) {
+			int n = source.read(input, available, needed - available);
+			if (n > 0)
+				available += n;
+			else {
+				ended = true;
+				end = available;
+			}
+		}
+		if (available < needed) {
+			Arrays.fill(input, available * channels, needed * channels, 0f);
+			available = needed;
+		}
+	}
+
+	/**
+	 * Finds the segment start from lo to hi whose first compared frames correlate best with those at continuation,
+	 * by one complex FFT of both (the candidates as the real, the continuation as the imaginary part) and one
+	 * inverse FFT of the cross spectrum
+	 */
+	private int bestStart(int lo, int hi, int continuation) {
+		int lags = hi - lo + 1;
+		int span = compared + lags - 1;
+		int size = fft.size();
+		for (int i = 0; i < size; i++) {
+			if (i < span) {
+				mix[i] = mono(lo + i);
+				re[i] = mix[i];
+			}
+			else
+				re[i] = 0;
+			im[i] = i < compared ? mono(continuation + i) : 0;
+		}
+		fft.transform(re, im);
+		for (int k = 0; k <= size / 2; k++) {
+			int j = (size - k) & (size - 1);
+			double zr = re[k], zi = im[k], wr = re[j], wi = im[j];
+			// split into the spectra of the two real signals
+			double xr = (zr + wr) / 2, xi = (zi - wi) / 2;
+			double yr = (zi + wi) / 2, yi = (wr - zr) / 2;
+			double pr = xr * yr + xi * yi;
+			double pi = xi * yr - xr * yi;
+			re[k] = pr;
+			im[k] = pi;
+			re[j] = pr;
+			im[j] = -pi;
+		}
+		fft.inverse(re, im);
+
+		double energy = 0;
+		for (int i = 0; i < compared; i++)
+			energy += mix[i] * mix[i];
+		int best = 0;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int lag = 0; lag < lags; lag++) {
+			double score = re[lag] / Math.sqrt(Math.max(0, energy) + 1e-9);
+			if (score > bestScore) {
+				bestScore = score;
+				best = lag;
+			}
+			if (lag + 1 < lags)
+				energy += mix[lag + compared] * mix[lag + compared] - mix[lag] * mix[lag];
+		}
+		return lo + best;
+	}
+
+	private float mono(int frame) {
+		float s = 0;
+		for (int c = 0, i = frame * channels; c < channels; c++, i++)
+			s += input[i];
+		return s / channels;
+	}
+
+	@Override
+	public void reset() {
+		available = 0;
+		ended = false;
+		end = Integer.MAX_VALUE;
+		dropped = 0;
+		position = 0;
+		previous = -1;
+		segmentStart = 0;
+		segmentRate = 1;
+		silent = 0;
+		ready = 0;
+		Arrays.fill(sum, 0f);
+	}
+
+	@Override
+	public double getConsumed() {
+		if (previous < 0)
+			return 0;
+		return Math.max(0, segmentStart + (hop - ready) * segmentRate);
+	}
+
+	public int getQuality() {
+		return quality;
+	}
+
+	/**
+	 * parseQuality
+	 * @param name fast, normal or high
+	 * @return the quality, -1 for any other name
+	 */
+	public static int parseQuality(String name) {
+		for (int i = 0; i < QUALITY_NAMES.length; i++)
+			if (QUALITY_NAMES[i].equalsIgnoreCase(name))
+				return i;
+		return -1;
+	}
+
+	public static String getQualityName(int quality) {
+		return QUALITY_NAMES[quality];
+	}
+}
@@ -0,0 +1,109 @@
+package backend.audio.dsp;
+
+/**
+ * VarispeedResampler
+ * plays its source faster or slower by linear interpolation between source frames, like a tape running at another
+ * speed: tempo and pitch change together. The rate can change between any two blocks without a click, since the read
+ * position carries over, and can glide within a block. Works on preallocated buffers only
+ */
+public final class VarispeedResampler implements RateProcessor {
+
+	private final int channels;
+
+	/*Source frames: the frame before the window (for interpolation across reads) and the window itself*/
+	private final float[] input;
+	private final int capacity;
+	private int available = 0;
+	private boolean ended = false;
+
+	/*Read position in the window, -1 is the frame kept from the previous window*/
+	private double position = 0;
+
+	/*Source frames consumed since the start or the last reset*/
+	private long consumed = 0;
+
+	/**
+	 * Constructor
+	 * @param channels
+	 * @param capacity source frames read at once
+	 */
+	public VarispeedResampler(int channels, int capacity) {
+		this.channels = channels;
+		this.capacity = capacity;
+		input = new float[(capacity + 1) * channels];
+	}
+
+	/**
+	 * process
+	 * @param source audio to play
+	 * @param output interleaved output samples
+	 * @param frames output frames wanted
+	 * @param rate source frames per output frame
+	 * @return frames written, less than asked for only at the end of the source
+	 */
+	public int process(FrameSource source, float[] output, int frames, double rate) {
+		return process(source, output, frames, rate, rate);
+	}
+
+	@Override
+	public int process(FrameSource source, float[] output, int frames, double fromRate, double toRate) {
+		double rate = Math.max(MIN_RATE, Math.min(MAX_RATE, fromRate));
+		double step = (Math.max(MIN_RATE, Math.min(MAX_RATE, toRate)) - rate) / frames;
+		int written = 0;
+		while (written < frames) {
+			int index = (int) Math.floor(position);
+			if (index + 1 >= available) {
+				if (!refill(source))
+					break;
+				continue;
+			}
+			float t = (float) (position - index);
+			int a = (index + 1) * channels;
+			int b = a + channels;
+			int out = written * channels;
+			for (int c = 0; c < channels; c++)
+				output[out + c] = input[a + c] + t * (input[b + c] - input[a + c]);
+			written++;
+			position += rate;
+			rate += step;
+		}
+		return written;
+	}
+
+	/**
+	 * Keeps the last frame of the window in front and reads a new window behind it
+	 * @return false at the end of the source
+	 */
+	private boolean refill(FrameSource source) {
+		if (ended)
+			return false;
+		if (available > 0)
+			System.arraycopy(input, available * channels, input, 0, channels);
+		// the kept frame is now at -1
+		position -= available;
+		consumed += available;
+
+		available = source.read(input, 1, capacity);
+		if (available <= 0) {
+			available = 0;
+			ended = true;
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void reset() {
+		available = 0;
+		position = 0;
+		consumed = 0;
+		ended = false;
+		for (int c = 0; c < channels; c++)
+			input[c] = 0;
+	}
+
+	@Override
+	public double getConsumed() {
+		return Math.max(0, consumed + position);
+	}
+}
@@ -1,15 +1,12 @@
 package backend.motion;
 
-import com.leapmotion.leap.Controller;
-
-
 public interface Detectable {
 	
 	/**
 	 * Returns true if the gesture is detected
-	 * @param controller
+	 * @param snapshot hand data of the current and previous frame
 	 * @return
 	 */
-	public boolean isDetected(Controller controller);
+	public boolean isDetected(FrameSnapshot snapshot);
 
 }
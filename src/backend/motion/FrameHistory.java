@@ -0,0 +1,91 @@
+package backend.motion;
+
+/**
+ * FrameHistory
+ * the right palm positions of the last frames in a fixed-capacity ring of primitive arrays, which
+ * TrajectoryRecognizer matches recorded motions against. One sample is added per frame and nothing is allocated
+ * after construction. Windows never reach back past the last change in the number of hands, since the rightmost
+ * palm is a different hand across such a change
+ */
+public final class FrameHistory {
+
+	/*Channels that can be read*/
+	public static final int RIGHT_X = 0;
+	public static final int RIGHT_Y = 1;
+	private static final int CHANNELS = 2;
+
+	private final int mask;
+	private final long[] timestamps;
+
+	/*Positions by channel*/
+	private final float[][] values;
+
+	/*Number of samples ever added, the sample where the current hand count started and that hand count*/
+	private long count = 0;
+	private long runStart = 0;
+	private int handCount = 0;
+
+	/**
+	 * Constructor
+	 * @param capacity number of frames kept, rounded up to a power of two
+	 */
+	public FrameHistory(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		mask = size - 1;
+		timestamps = new long[size];
+		values = new float[CHANNELS][size];
+	}
+
+	/**
+	 * add
+	 * appends the current frame with the filtered palm positions of the features
+	 * @param features
+	 */
+	public void add(GestureFeatures features) {
+		int slot = (int) count & mask;
+		if (count == 0 || features.getHandCount() != handCount)
+			runStart = count;
+
+		handCount = features.getHandCount();
+		timestamps[slot] = features.getTimestamp();
+		values[RIGHT_X][slot] = features.getRightX();
+		values[RIGHT_Y][slot] = features.getRightY();
+		count++;
+	}
+
+	/**
+	 * clear
+	 * forgets every sample
+	 */
+	public void clear() {
+		count = 0;
+		runStart = 0;
+	}
+
+	/**
+	 * samples
+	 * @param window number of frames wanted
+	 * @return number of frames actually available for the window (same hand count, still in the ring)
+	 */
+	public int samples(int window) {
+		return (int) Math.min(window, Math.min(count - runStart, mask));
+	}
+
+	/**
+	 * The methods below return the values of a sample, 0 being the latest frame and 1 the one before
+	 */
+
+	public long getTimestamp(int age) {
+		return timestamps[slot(age)];
+	}
+
+	public float get(int channel, int age) {
+		return values[channel][slot(age)];
+	}
+
+	private int slot(int age) {
+		if (age < 0 || age >= Math.min(count, mask + 1))
+			throw new IndexOutOfBoundsException("no sample " + age + " frames back");
+		return (int) (count - 1 - age) & mask;
+	}
+}
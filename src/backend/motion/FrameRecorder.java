@@ -0,0 +1,152 @@
+package backend.motion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FrameRecorder
+ * writes frame snapshots to a compact binary file (a header followed by one fixed size record per frame)
+ * so real leap sessions can be replayed later with FrameReplay, without the device
+ */
+public class FrameRecorder {
+
+	/*File header: "LPFR" and the record format version*/
+	public static final int MAGIC = 0x4C504652;
+	public static final int VERSION = 1;
+
+	private final File file;
+	private DataOutputStream out;
+	private int frames = 0;
+
+	/**
+	 * Constructor
+	 * @param file file to record to (overwritten)
+	 * @throws IOException
+	 */
+	public FrameRecorder(File file) throws IOException {
+		this.file = file;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	/**
+	 * open
+	 * @param file
+	 * @return recorder writing to the file, null if it could not be created
+	 */
+	public static FrameRecorder open(File file) {
+		try {
+			return new FrameRecorder(file);
+		} catch (IOException e) {
+			System.out.println("ERROR: could not record frames to " + file);
+			return null;
+		}
+	}
+
+	/**
+	 * record
+	 * appends one snapshot; recording stops at the first write error
+	 * @param s
+	 */
+	public synchronized void record(FrameSnapshot s) {
+		if (out == null)
+			return;
+		try {
+			out.writeLong(s.getTimestamp());
+			out.writeByte(s.getHandCount());
+			out.writeByte(s.getPrevHandCount());
+			out.writeFloat(s.getRightX());
+			out.writeFloat(s.getRightY());
+			out.writeFloat(s.getRightZ());
+			out.writeByte(s.getRightFingers());
+			out.writeFloat(s.getLeftX());
+			out.writeFloat(s.getLeftY());
+			out.writeFloat(s.getLeftZ());
+			out.writeByte(s.getLeftFingers());
+			out.writeFloat(s.getPrevRightX());
+			out.writeFloat(s.getPrevRightY());
+			out.writeFloat(s.getPrevRightZ());
+			out.writeFloat(s.getPrevLeftX());
+			out.writeFloat(s.getPrevLeftY());
+			out.writeFloat(s.getPrevLeftZ());
+			out.writeByte(s.getClockwiseCircles());
+			out.writeByte(s.getCounterClockwiseCircles());
+			out.writeFloat(s.getSwipeX());
+			out.writeByte(s.getScreenTaps());
+			frames++;
+		} catch (IOException e) {
+			System.out.println("ERROR: could not write frame to " + file + ", recording stopped");
+			close();
+		}
+	}
+
+	/**
+	 * close
+	 * flushes and closes the file, later snapshots are ignored
+	 */
+	public synchronized void close() {
+		if (out == null)
+			return;
+		try {
+			out.close();
+		} catch (IOException e) {
+			System.out.println("ERROR: could not close " + file);
+		}
+		out = null;
+	}
+
+	/**
+	 * getFrames
+	 * @return number of snapshots recorded so far
+	 */
+	public synchronized int getFrames() {
+		return frames;
+	}
+
+	/**
+	 * read
+	 * reads back every snapshot of a recording
+	 * @param file
+	 * @return snapshots in recorded order
+	 * @throws IOException if the file is not a recording or cannot be read
+	 */
+	public static List<FrameSnapshot> read(File file) throws IOException {
+		List<FrameSnapshot> snapshots = new ArrayList<FrameSnapshot>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " is not a frame recording");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException(file + " has unsupported recording version " + version);
+
+			while (true) {
+				long timestamp;
+				try {
+					timestamp = in.readLong();
+				} catch (EOFException e) {
+					break;
+				}
+				snapshots.add(new FrameSnapshot(timestamp, in.readByte(), in.readByte(),
+						in.readFloat(), in.readFloat(), in.readFloat(), in.readByte(),
+						in.readFloat(), in.readFloat(), in.readFloat(), in.readByte(),
+						in.readFloat(), in.readFloat(), in.readFloat(),
+						in.readFloat(), in.readFloat(), in.readFloat(),
+						in.readByte(), in.readByte(), in.readFloat(), in.readByte()));
+			}
+		} finally {
+			in.close();
+		}
+		return snapshots;
+	}
+}
@@ -0,0 +1,145 @@
+package backend.motion;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * FrameReplay
+ * feeds recorded frame snapshots to a SnapshotHandler, either paced by the recorded timestamps (optionally sped up)
+ * or as fast as possible. Replaying the same recording always produces the same sequence of snapshots, so the
+ * gesture pipeline can be checked and benchmarked without the leap device
+ */
+public class FrameReplay {
+
+	private final List<FrameSnapshot> snapshots;
+	private final double speed;
+
+	/**
+	 * Constructor
+	 * @param snapshots recorded snapshots
+	 * @param speed 1 for the recorded pace, 2 for twice as fast..., 0 or less for no pacing at all
+	 */
+	public FrameReplay(List<FrameSnapshot> snapshots, double speed) {
+		this.snapshots = snapshots;
+		this.speed = speed;
+	}
+
+	/**
+	 * load
+	 * @param file recording written by FrameRecorder
+	 * @param speed see constructor
+	 * @return replay of the recording, null if it could not be read
+	 */
+	public static FrameReplay load(File file, double speed) {
+		try {
+			return new FrameReplay(FrameRecorder.read(file), speed);
+		} catch (IOException e) {
+			System.out.println("ERROR: could not read frame recording: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * replay
+	 * hands every snapshot to the handler on the calling thread
+	 * @param handler
+	 * @return false if the thread was interrupted before the end of the recording
+	 */
+	public boolean replay(SnapshotHandler handler) {
+		long start = System.nanoTime();
+		long firstTimestamp = snapshots.isEmpty() ? 0 : snapshots.get(0).getTimestamp();
+
+		for (FrameSnapshot snapshot : snapshots) {
+			if (speed > 0) {
+				// leap timestamps are in microseconds
+				long due = start + (long) ((snapshot.getTimestamp() - firstTimestamp) * 1000 / speed);
+				long wait = due - System.nanoTime();
+				if (wait > 0) {
+					try {
+						Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return false;
+					}
+				}
+			}
+			handler.onSnapshot(snapshot);
+		}
+		return true;
+	}
+
+	/**
+	 * start
+	 * replays on a new daemon thread
+	 * @param handler
+	 * @return the replay thread
+	 */
+	public Thread start(final SnapshotHandler handler) {
+		Thread t = new Thread("Frame Replay") {
+			@Override
+			public void run() {
+				replay(handler);
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	public List<FrameSnapshot> getSnapshots() {
+		return snapshots;
+	}
+
+	/**
+	 * main
+	 * replays a recording through the gesture rules as fast as possible and prints how often each rule matched
+	 * and how long classification took
+	 * usage: FrameReplay recording [rules file]
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("usage: FrameReplay recording [rules file]");
+			return;
+		}
+		FrameReplay replay = load(new File(args[0]), 0);
+		if (replay == null)
+			return;
+		GestureRuleSet rules = GestureRuleSet.load();
+		if (args.length > 1) {
+			try {
+				rules = GestureRuleSet.load(new File(args[1]));
+			} catch (IOException e) {
+				System.out.println("ERROR: could not read gesture rules from " + args[1]);
+				return;
+			}
+		}
+		final GestureDispatcher dispatcher = new GestureDispatcher(rules);
+		final GestureFeatures features = new GestureFeatures();
+		final int[] counts = new int[rules.size()];
+
+		SnapshotHandler classifier = new SnapshotHandler() {
+			@Override
+			public void onSnapshot(FrameSnapshot snapshot) {
+				features.update(snapshot);
+				long matches = dispatcher.dispatch(features);
+				for (int i = 0; i < counts.length; i++)
+					if (GestureRuleSet.isSet(matches, i))
+						counts[i]++;
+			}
+		};
+
+		long start = System.nanoTime();
+		replay.replay(classifier);
+		long elapsed = System.nanoTime() - start;
+
+		int frames = replay.getSnapshots().size();
+		System.out.println(frames + " frames");
+		for (int i = 0; i < counts.length; i++)
+			System.out.println(String.format("%-16s %d", rules.getName(i), counts[i]));
+		if (frames > 0)
+			System.out.println(String.format("%.1f ns/frame, %.2f rules checked per frame",
+					(double) elapsed / frames, dispatcher.getAverageEvaluations()));
+	}
+}
@@ -0,0 +1,297 @@
+package backend.motion;
+
+import com.leapmotion.leap.CircleGesture;
+import com.leapmotion.leap.Controller;
+import com.leapmotion.leap.Frame;
+import com.leapmotion.leap.Gesture;
+import com.leapmotion.leap.Hand;
+import com.leapmotion.leap.HandList;
+import com.leapmotion.leap.SwipeGesture;
+import com.leapmotion.leap.Vector;
+
+/**
+ * FrameSnapshot
+ * an immutable copy of the hand data the gesture detectors need from the current and previous leap frame,
+ * plus a summary of the leap's own circle/swipe/screen tap gestures in the current frame.
+ * It is built once per onFrame so the detectors only do arithmetic on primitives instead of each one
+ * going back through the leap controller for the same frames. Since it holds everything the gesture pipeline
+ * reads, snapshots can also be recorded and replayed (see FrameRecorder and FrameReplay)
+ */
+public final class FrameSnapshot {
+
+	/*Timestamp of the current frame in microseconds (leap clock)*/
+	private final long timestamp;
+
+	/*Number of hands in the current and previous frame*/
+	private final int handCount;
+	private final int prevHandCount;
+
+	/*Rightmost hand of the current frame*/
+	private final float rightX, rightY, rightZ;
+	private final int rightFingers;
+
+	/*Leftmost hand of the current frame (same hand as rightmost when there is only one)*/
+	private final float leftX, leftY, leftZ;
+	private final int leftFingers;
+
+	/*Rightmost and leftmost hands of the previous frame*/
+	private final float prevRightX, prevRightY, prevRightZ;
+	private final float prevLeftX, prevLeftY, prevLeftZ;
+
+	/*Leap gestures of the current frame: circles by direction, x direction of a finished swipe (0 if none)
+	  and finished screen taps*/
+	private final int clockwiseCircles;
+	private final int counterClockwiseCircles;
+	private final float swipeX;
+	private final int screenTaps;
+
+	/**
+	 * Constructor - takes every value directly so snapshots can also be built without a controller
+	 */
+	public FrameSnapshot(long timestamp, int handCount, int prevHandCount,
+			float rightX, float rightY, float rightZ, int rightFingers,
+			float leftX, float leftY, float leftZ, int leftFingers,
+			float prevRightX, float prevRightY, float prevRightZ,
+			float prevLeftX, float prevLeftY, float prevLeftZ,
+			int clockwiseCircles, int counterClockwiseCircles, float swipeX, int screenTaps) {
+		this.timestamp = timestamp;
+		this.handCount = handCount;
+		this.prevHandCount = prevHandCount;
+		this.rightX = rightX;
+		this.rightY = rightY;
+		this.rightZ = rightZ;
+		this.rightFingers = rightFingers;
+		this.leftX = leftX;
+		this.leftY = leftY;
+		this.leftZ = leftZ;
+		this.leftFingers = leftFingers;
+		this.prevRightX = prevRightX;
+		this.prevRightY = prevRightY;
+		this.prevRightZ = prevRightZ;
+		this.prevLeftX = prevLeftX;
+		this.prevLeftY = prevLeftY;
+		this.prevLeftZ = prevLeftZ;
+		this.clockwiseCircles = clockwiseCircles;
+		this.counterClockwiseCircles = counterClockwiseCircles;
+		this.swipeX = swipeX;
+		this.screenTaps = screenTaps;
+	}
+
+	/**
+	 * capture
+	 * reads the current and previous frame from the controller (the only two frame requests per onFrame)
+	 * @param controller
+	 * @return snapshot of both frames
+	 */
+	public static FrameSnapshot capture(Controller controller) {
+		return capture(controller.frame(), controller.frame(1));
+	}
+
+	/**
+	 * capture
+	 * @param frame current frame
+	 * @param prevFrame previous frame
+	 * @return snapshot of both frames
+	 */
+	public static FrameSnapshot capture(Frame frame, Frame prevFrame) {
+		HandList hands = frame.hands();
+		HandList prevHands = prevFrame.hands();
+		int handCount = hands.count();
+		int prevHandCount = prevHands.count();
+
+		float rightX = 0, rightY = 0, rightZ = 0, leftX = 0, leftY = 0, leftZ = 0;
+		int rightFingers = 0, leftFingers = 0;
+		if (handCount > 0) {
+			Hand right = hands.rightmost();
+			Vector pos = right.stabilizedPalmPosition();
+			rightX = pos.getX();
+			rightY = pos.getY();
+			rightZ = pos.getZ();
+			rightFingers = right.fingers().count();
+
+			if (handCount == 1) {
+				leftX = rightX;
+				leftY = rightY;
+				leftZ = rightZ;
+				leftFingers = rightFingers;
+			}
+			else {
+				Hand left = hands.leftmost();
+				pos = left.stabilizedPalmPosition();
+				leftX = pos.getX();
+				leftY = pos.getY();
+				leftZ = pos.getZ();
+				leftFingers = left.fingers().count();
+			}
+		}
+
+		float prevRightX = 0, prevRightY = 0, prevRightZ = 0, prevLeftX = 0, prevLeftY = 0, prevLeftZ = 0;
+		if (prevHandCount > 0) {
+			Vector pos = prevHands.rightmost().stabilizedPalmPosition();
+			prevRightX = pos.getX();
+			prevRightY = pos.getY();
+			prevRightZ = pos.getZ();
+
+			if (prevHandCount > 1)
+				pos = prevHands.leftmost().stabilizedPalmPosition();
+			prevLeftX = pos.getX();
+			prevLeftY = pos.getY();
+			prevLeftZ = pos.getZ();
+		}
+
+		int clockwiseCircles = 0, counterClockwiseCircles = 0, screenTaps = 0;
+		float swipeX = 0;
+		for (Gesture g : frame.gestures()) {
+			if (g.type() == Gesture.Type.TYPE_CIRCLE) {
+				CircleGesture circle = new CircleGesture(g);
+				if (circle.pointable().direction().angleTo(circle.normal()) <= Math.PI/2)
+					clockwiseCircles++;
+				else
+					counterClockwiseCircles++;
+			}
+			else if (g.state() == Gesture.State.STATE_STOP) {
+				if (g.type() == Gesture.Type.TYPE_SWIPE)
+					swipeX = new SwipeGesture(g).direction().getX();
+				else if (g.type() == Gesture.Type.TYPE_SCREEN_TAP)
+					screenTaps++;
+			}
+		}
+
+		return new FrameSnapshot(frame.timestamp(), handCount, prevHandCount,
+				rightX, rightY, rightZ, rightFingers,
+				leftX, leftY, leftZ, leftFingers,
+				prevRightX, prevRightY, prevRightZ,
+				prevLeftX, prevLeftY, prevLeftZ,
+				clockwiseCircles, counterClockwiseCircles, swipeX, screenTaps);
+	}
+
+	/*ACCESSORS*/
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public int getHandCount() {
+		return handCount;
+	}
+
+	public int getPrevHandCount() {
+		return prevHandCount;
+	}
+
+	/**
+	 * Returns true if both the current and previous frame have at least one hand
+	 */
+	public boolean hasHands() {
+		return handCount > 0 && prevHandCount > 0;
+	}
+
+	/**
+	 * Returns true if both the current and previous frame have exactly two hands
+	 */
+	public boolean hasTwoHands() {
+		return handCount == 2 && prevHandCount == 2;
+	}
+
+	public float getRightX() {
+		return rightX;
+	}
+
+	public float getRightY() {
+		return rightY;
+	}
+
+	public float getRightZ() {
+		return rightZ;
+	}
+
+	public int getRightFingers() {
+		return rightFingers;
+	}
+
+	public float getLeftX() {
+		return leftX;
+	}
+
+	public float getLeftY() {
+		return leftY;
+	}
+
+	public float getLeftZ() {
+		return leftZ;
+	}
+
+	public int getLeftFingers() {
+		return leftFingers;
+	}
+
+	public float getPrevRightX() {
+		return prevRightX;
+	}
+
+	public float getPrevRightY() {
+		return prevRightY;
+	}
+
+	public float getPrevRightZ() {
+		return prevRightZ;
+	}
+
+	public float getPrevLeftX() {
+		return prevLeftX;
+	}
+
+	public float getPrevLeftY() {
+		return prevLeftY;
+	}
+
+	public float getPrevLeftZ() {
+		return prevLeftZ;
+	}
+
+	public int getClockwiseCircles() {
+		return clockwiseCircles;
+	}
+
+	public int getCounterClockwiseCircles() {
+		return counterClockwiseCircles;
+	}
+
+	/**
+	 * Returns the number of circle gestures in either direction
+	 */
+	public int getCircles() {
+		return clockwiseCircles + counterClockwiseCircles;
+	}
+
+	/**
+	 * Returns the x component of the direction of a swipe that finished in this frame, 0 if none did
+	 */
+	public float getSwipeX() {
+		return swipeX;
+	}
+
+	public int getScreenTaps() {
+		return screenTaps;
+	}
+
+	/**
+	 * The methods below return how far the rightmost/leftmost palm moved since the previous frame
+	 */
+
+	public float getRightDeltaX() {
+		return rightX - prevRightX;
+	}
+
+	public float getRightDeltaY() {
+		return rightY - prevRightY;
+	}
+
+	public float getLeftDeltaX() {
+		return leftX - prevLeftX;
+	}
+
+	public float getLeftDeltaY() {
+		return leftY - prevLeftY;
+	}
+}
@@ -0,0 +1,203 @@
+package backend.motion;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GestureBenchmark
+ * measures how long the gesture path takes per frame and how much it allocates per frame, by replaying
+ * snapshots (recorded with FrameRecorder or generated) through every gesture rule on its own, the whole rule set,
+ * the dispatcher and the trajectory recognizer; any other SnapshotHandler can be run over the same frames (the
+ * full LeapListener classification is measured by frontend.soundpanel.ListenerBenchmark). Each case is warmed up
+ * first, then measured over several passes; the time is compared against the budget of a frame at the device rate
+ * usage: GestureBenchmark [recording]
+ */
+public class GestureBenchmark {
+
+	/*Time between two frames at the leap's usual 100+ fps*/
+	public static final long FRAME_BUDGET_NANOS = 10000000L;
+
+	private static final int SYNTHETIC_FRAMES = 20000;
+	private static final int WARMUP_PASSES = 5;
+	private static final int MEASURED_PASSES = 10;
+
+	/*Results of the benchmarked calls end up here so the JIT cannot drop the calls*/
+	private static long sink;
+
+	private final List<FrameSnapshot> snapshots;
+	private final com.sun.management.ThreadMXBean allocations;
+
+	/**
+	 * Constructor
+	 * @param snapshots frames replayed by every case
+	 */
+	public GestureBenchmark(List<FrameSnapshot> snapshots) {
+		this.snapshots = snapshots;
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported())
+			allocations = (com.sun.management.ThreadMXBean) threads;
+		else
+			allocations = null;
+	}
+
+	/**
+	 * run
+	 * warms the handler up, then replays the snapshots through it and prints the time and allocation per frame
+	 * @param name printed with the result
+	 * @param handler
+	 */
+	public void run(String name, SnapshotHandler handler) {
+		for (int i = 0; i < WARMUP_PASSES; i++)
+			pass(handler);
+
+		long threadId = Thread.currentThread().getId();
+		double[] nanosPerFrame = new double[MEASURED_PASSES];
+		long bytes = 0;
+		for (int i = 0; i < MEASURED_PASSES; i++) {
+			long allocatedBefore = allocations == null ? 0 : allocations.getThreadAllocatedBytes(threadId);
+			long start = System.nanoTime();
+			pass(handler);
+			nanosPerFrame[i] = (double) (System.nanoTime() - start) / snapshots.size();
+			if (allocations != null)
+				bytes += allocations.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		}
+
+		double mean = 0;
+		for (double n : nanosPerFrame)
+			mean += n;
+		mean /= MEASURED_PASSES;
+		double variance = 0;
+		for (double n : nanosPerFrame)
+			variance += (n - mean) * (n - mean);
+		double deviation = Math.sqrt(variance / MEASURED_PASSES);
+
+		String allocated = allocations == null ? "n/a"
+				: String.format("%.1f", (double) bytes / ((long) MEASURED_PASSES * snapshots.size()));
+		System.out.println(String.format("%-24s %10.1f +- %6.1f ns/frame %10s B/frame %8.4f%% of frame budget",
+				name, mean, deviation, allocated, 100 * mean / FRAME_BUDGET_NANOS));
+	}
+
+	private void pass(SnapshotHandler handler) {
+		for (int i = 0, n = snapshots.size(); i < n; i++)
+			handler.onSnapshot(snapshots.get(i));
+	}
+
+	/**
+	 * syntheticSession
+	 * @return the scripted conductor motions followed by random hand motion, with some tracking noise
+	 */
+	private static List<FrameSnapshot> syntheticSession() {
+		SyntheticFrameSource source = new SyntheticFrameSource(42);
+		source.setNoise(1);
+		source.setDropout(0.002f);
+		List<FrameSnapshot> snapshots = source.generate(SYNTHETIC_FRAMES / 2);
+		source.setPattern(SyntheticFrameSource.Pattern.RANDOM_WALK);
+		snapshots.addAll(source.generate(SYNTHETIC_FRAMES / 2));
+		return snapshots;
+	}
+
+	/**
+	 * open
+	 * @param recording recording to replay, null for synthetic frames
+	 * @return benchmark over the frames, null if there are none
+	 * @throws Exception if the recording cannot be read
+	 */
+	public static GestureBenchmark open(String recording) throws Exception {
+		List<FrameSnapshot> snapshots = recording == null ? syntheticSession() : FrameRecorder.read(new File(recording));
+		if (snapshots.isEmpty()) {
+			System.out.println("ERROR: no frames to replay");
+			return null;
+		}
+		System.out.println(snapshots.size() + " frames, " + WARMUP_PASSES + " warmup and "
+				+ MEASURED_PASSES + " measured passes each");
+		return new GestureBenchmark(snapshots);
+	}
+
+	/**
+	 * runDetectors
+	 * runs every case of the backend's gesture path: each rule, the palm filters, the rule set, the dispatcher and
+	 * the trajectories
+	 */
+	public void runDetectors() {
+		final GestureRuleSet rules = GestureRuleSet.load();
+		final GestureFeatures features = new GestureFeatures();
+		final GestureDispatcher dispatcher = new GestureDispatcher(rules);
+
+		// every rule on its own, through the Detectable interface
+		for (int i = 0; i < rules.size(); i++) {
+			final Detectable rule = rules.getRule(i);
+			run(rules.getName(i), new SnapshotHandler() {
+				@Override
+				public void onSnapshot(FrameSnapshot snapshot) {
+					if (rule.isDetected(snapshot))
+						sink++;
+				}
+			});
+		}
+
+		// the filtering every detector's features go through
+		run("palm filters", new SnapshotHandler() {
+			@Override
+			public void onSnapshot(FrameSnapshot snapshot) {
+				features.update(snapshot);
+				sink += features.getHandCount();
+			}
+		});
+
+		run("rule set", new SnapshotHandler() {
+			@Override
+			public void onSnapshot(FrameSnapshot snapshot) {
+				features.update(snapshot);
+				sink += rules.evaluate(features);
+			}
+		});
+
+		run("dispatcher", new SnapshotHandler() {
+			@Override
+			public void onSnapshot(FrameSnapshot snapshot) {
+				features.update(snapshot);
+				sink += dispatcher.dispatch(features);
+			}
+		});
+
+		// trajectory matching, against the listed templates or, without any, against pieces of the replayed frames
+		TrajectoryRecognizer listed = TrajectoryRecognizer.load();
+		List<TrajectoryTemplate> templates = new ArrayList<TrajectoryTemplate>();
+		for (int i = 0; i < listed.size(); i++)
+			templates.add(listed.getTemplate(i));
+		boolean pieces = templates.isEmpty();
+		for (int start = 0; pieces && templates.size() < 8 && start + 80 < snapshots.size(); start += 80) {
+			TrajectoryTemplate template = TrajectoryTemplate.fromRecording("piece" + start, null,
+					snapshots.subList(start, start + 80), TrajectoryTemplate.DEFAULT_THRESHOLD,
+					TrajectoryRecognizer.DEFAULT_BAND);
+			if (template != null)
+				templates.add(template);
+		}
+		final TrajectoryRecognizer trajectories = new TrajectoryRecognizer(templates);
+		run("trajectories (" + trajectories.size() + ")", new SnapshotHandler() {
+			@Override
+			public void onSnapshot(FrameSnapshot snapshot) {
+				features.update(snapshot);
+				sink += trajectories.recognize(features);
+			}
+		});
+
+	}
+
+	/**
+	 * main
+	 * @param args optional recording to replay instead of synthetic frames
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		GestureBenchmark benchmark = open(args.length > 0 ? args[0] : null);
+		if (benchmark == null)
+			return;
+		benchmark.runDetectors();
+		System.out.println("checksum " + sink);
+	}
+}
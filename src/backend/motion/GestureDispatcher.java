@@ -0,0 +1,201 @@
+package backend.motion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * GestureDispatcher
+ * a decision tree over a GestureRuleSet. Frames are first sorted by the features every rule shares (hand count,
+ * rightmost finger count and the region the rightmost palm is in); each leaf of the tree holds the rules that can
+ * still match there, so only their palm movement has to be checked. The result is the same bit mask
+ * GestureRuleSet.evaluate returns, but a frame usually costs a couple of rule checks instead of all of them
+ */
+public final class GestureDispatcher {
+
+	/*Hand count branches*/
+	private static final int ONE_HAND = 0;
+	private static final int TWO_HANDS = 1;
+	private static final int OTHER_HANDS = 2;
+	private static final int HAND_BRANCHES = 3;
+
+	private final GestureRuleSet rules;
+
+	/*Finger counts where some rule starts or stops matching; branch b covers [fingerBounds[b-1], fingerBounds[b])*/
+	private final int[] fingerBounds;
+
+	/*Palm x values where some rule starts or stops matching; every bound is its own branch since the ranges are exclusive*/
+	private final float[] xBounds;
+	private final int xRegions;
+
+	/*Candidate rules of every leaf, indexed by leaf(hands, fingers, region)*/
+	private final int[][] candidates;
+
+	/*Cost counters*/
+	private int lastEvaluations;
+	private long totalEvaluations;
+	private long frames;
+
+	/**
+	 * Constructor - builds the tree for the given rules
+	 * @param rules
+	 */
+	public GestureDispatcher(GestureRuleSet rules) {
+		this.rules = rules;
+
+		TreeSet<Integer> fingers = new TreeSet<Integer>();
+		TreeSet<Float> xs = new TreeSet<Float>();
+		for (int i = 0; i < rules.size(); i++) {
+			GestureRule rule = rules.getRule(i);
+			if (rule.getMinFingers() > 0)
+				fingers.add(rule.getMinFingers());
+			if (rule.getMaxFingers() < Integer.MAX_VALUE)
+				fingers.add(rule.getMaxFingers() + 1);
+			if (!Float.isInfinite(rule.getMinX()))
+				xs.add(rule.getMinX());
+			if (!Float.isInfinite(rule.getMaxX()))
+				xs.add(rule.getMaxX());
+		}
+
+		fingerBounds = new int[fingers.size()];
+		int n = 0;
+		for (int f : fingers)
+			fingerBounds[n++] = f;
+
+		xBounds = new float[xs.size()];
+		n = 0;
+		for (float x : xs)
+			xBounds[n++] = x;
+		xRegions = 2 * xBounds.length + 1;
+
+		candidates = new int[HAND_BRANCHES * (fingerBounds.length + 1) * xRegions][];
+		List<Integer> leafRules = new ArrayList<Integer>();
+		for (int h = 0; h < HAND_BRANCHES; h++) {
+			for (int f = 0; f <= fingerBounds.length; f++) {
+				for (int r = 0; r < xRegions; r++) {
+					leafRules.clear();
+					for (int i = 0; i < rules.size(); i++) {
+						if (rules.staticMatches(i, h == ONE_HAND, h == TWO_HANDS, representativeX(r), representativeFingers(f)))
+							leafRules.add(i);
+					}
+					int[] leaf = new int[leafRules.size()];
+					for (int i = 0; i < leaf.length; i++)
+						leaf[i] = leafRules.get(i);
+					candidates[leaf(h, f, r)] = leaf;
+				}
+			}
+		}
+	}
+
+	/**
+	 * dispatch
+	 * @param features
+	 * @return bit mask with bit i set if rule i matched (same as GestureRuleSet.evaluate)
+	 */
+	public long dispatch(GestureFeatures features) {
+		frames++;
+		lastEvaluations = 0;
+		if (!features.hasHands())
+			return 0L;
+
+		int h;
+		if (features.getHandCount() == 1)
+			h = ONE_HAND;
+		else if (features.hasTwoHands())
+			h = TWO_HANDS;
+		else
+			h = OTHER_HANDS;
+
+		int[] leaf = candidates[leaf(h, fingerBranch(features.getRightFingers()), xRegion(features.getRightX()))];
+		if (leaf.length == 0)
+			return 0L;
+
+		float rightVelocityX = features.getRightVelocityX();
+		float rightVelocityY = features.getRightVelocityY();
+		float leftVelocityX = features.getLeftVelocityX();
+		float leftVelocityY = features.getLeftVelocityY();
+		int leftFingers = features.getLeftFingers();
+
+		long mask = 0L;
+		for (int i : leaf) {
+			if (rules.movementMatches(i, rightVelocityX, rightVelocityY, leftVelocityX, leftVelocityY, leftFingers))
+				mask |= 1L << i;
+		}
+		lastEvaluations = leaf.length;
+		totalEvaluations += leaf.length;
+		return mask;
+	}
+
+	private int leaf(int hands, int fingers, int region) {
+		return (hands * (fingerBounds.length + 1) + fingers) * xRegions + region;
+	}
+
+	private int fingerBranch(int fingers) {
+		int b = 0;
+		while (b < fingerBounds.length && fingers >= fingerBounds[b])
+			b++;
+		return b;
+	}
+
+	private int xRegion(float x) {
+		for (int j = 0; j < xBounds.length; j++) {
+			if (x < xBounds[j])
+				return 2 * j;
+			if (x == xBounds[j])
+				return 2 * j + 1;
+		}
+		return 2 * xBounds.length;
+	}
+
+	/**
+	 * Returns a finger count inside finger branch b
+	 */
+	private int representativeFingers(int b) {
+		if (b > 0)
+			return fingerBounds[b - 1];
+		return fingerBounds.length > 0 ? fingerBounds[0] - 1 : 0;
+	}
+
+	/**
+	 * Returns a palm x inside x region r
+	 */
+	private float representativeX(int r) {
+		int j = r / 2;
+		if (xBounds.length == 0)
+			return 0;
+		if (r % 2 == 1)
+			return xBounds[j];
+		if (j == 0)
+			return xBounds[0] - 1;
+		if (j == xBounds.length)
+			return xBounds[j - 1] + 1;
+		return (xBounds[j - 1] + xBounds[j]) / 2;
+	}
+
+	/*ACCESSORS*/
+
+	public GestureRuleSet getRules() {
+		return rules;
+	}
+
+	/**
+	 * Returns how many rules had their movement checked on the last dispatched frame
+	 */
+	public int getLastEvaluations() {
+		return lastEvaluations;
+	}
+
+	/**
+	 * Returns how many rules had their movement checked since the dispatcher was created
+	 */
+	public long getTotalEvaluations() {
+		return totalEvaluations;
+	}
+
+	/**
+	 * Returns the average number of rule checks per dispatched frame
+	 */
+	public double getAverageEvaluations() {
+		return frames == 0 ? 0 : (double) totalEvaluations / frames;
+	}
+}
@@ -0,0 +1,172 @@
+package backend.motion;
+
+/**
+ * GestureFeatures
+ * the values gesture detectors are evaluated against (hand counts, palm position and velocity, finger counts).
+ * They are extracted once per frame and shared by every detector; one instance is reused from frame to frame.
+ * Palm position and velocity come from a PalmFilter per hand instead of the raw positions of two frames, so the
+ * rules' mm/s thresholds are checked against a smoothed velocity and the jitter of the tracking does not trigger
+ * gestures. The filters start over whenever the number of hands changes, since the rightmost/leftmost palm is a
+ * different hand across such a change
+ */
+public final class GestureFeatures {
+
+	/*Time between two leap frames (s) assumed for the velocity guess when a filter starts*/
+	private static final float NOMINAL_FRAME_TIME = 1 / 110f;
+
+	private final PalmFilter right;
+	private final PalmFilter left;
+
+	private long timestamp;
+	private int handCount;
+	private int prevHandCount;
+	private int rightFingers;
+	private int leftFingers;
+
+	public GestureFeatures() {
+		this(PalmFilter.DEFAULT_MEASUREMENT_NOISE, PalmFilter.DEFAULT_ACCELERATION_NOISE);
+	}
+
+	/**
+	 * Constructor
+	 * @param measurementNoise standard deviation of the measured palm position (mm)
+	 * @param accelerationNoise standard deviation of the palm's acceleration (mm/s^2)
+	 */
+	public GestureFeatures(float measurementNoise, float accelerationNoise) {
+		right = new PalmFilter(measurementNoise, accelerationNoise);
+		left = new PalmFilter(measurementNoise, accelerationNoise);
+	}
+
+	/**
+	 * update
+	 * extracts the features of a frame snapshot; snapshots are expected in frame order
+	 * @param snapshot
+	 */
+	public void update(FrameSnapshot snapshot) {
+		int hands = snapshot.getHandCount();
+		if (hands != handCount || hands == 0) {
+			right.reset();
+			left.reset();
+		}
+		timestamp = snapshot.getTimestamp();
+		handCount = hands;
+		prevHandCount = snapshot.getPrevHandCount();
+		rightFingers = snapshot.getRightFingers();
+		leftFingers = snapshot.getLeftFingers();
+		if (hands == 0)
+			return;
+
+		if (right.isTracking()) {
+			right.update(timestamp, snapshot.getRightX(), snapshot.getRightY(), snapshot.getRightZ());
+			left.update(timestamp, snapshot.getLeftX(), snapshot.getLeftY(), snapshot.getLeftZ());
+		}
+		else {
+			// first frame of this hand: guess the velocity from the movement since the previous frame
+			float rate = snapshot.getPrevHandCount() > 0 ? 1 / NOMINAL_FRAME_TIME : 0;
+			right.start(timestamp, snapshot.getRightX(), snapshot.getRightY(), snapshot.getRightZ(),
+					snapshot.getRightDeltaX() * rate, snapshot.getRightDeltaY() * rate,
+					(snapshot.getRightZ() - snapshot.getPrevRightZ()) * rate);
+			left.start(timestamp, snapshot.getLeftX(), snapshot.getLeftY(), snapshot.getLeftZ(),
+					snapshot.getLeftDeltaX() * rate, snapshot.getLeftDeltaY() * rate,
+					(snapshot.getLeftZ() - snapshot.getPrevLeftZ()) * rate);
+		}
+	}
+
+	/**
+	 * reset
+	 * forgets the previous frames, so the next update starts the filters over from its snapshot alone
+	 */
+	public void reset() {
+		handCount = 0;
+		right.reset();
+		left.reset();
+	}
+
+	/*ACCESSORS*/
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public int getHandCount() {
+		return handCount;
+	}
+
+	public int getPrevHandCount() {
+		return prevHandCount;
+	}
+
+	/**
+	 * Returns true if both the current and previous frame have at least one hand
+	 */
+	public boolean hasHands() {
+		return handCount > 0 && prevHandCount > 0;
+	}
+
+	/**
+	 * Returns true if both the current and previous frame have exactly two hands
+	 */
+	public boolean hasTwoHands() {
+		return handCount == 2 && prevHandCount == 2;
+	}
+
+	/**
+	 * The methods below return the smoothed rightmost/leftmost palm position (mm)
+	 */
+
+	public float getRightX() {
+		return right.getX();
+	}
+
+	public float getRightY() {
+		return right.getY();
+	}
+
+	public float getLeftX() {
+		return left.getX();
+	}
+
+	public float getLeftY() {
+		return left.getY();
+	}
+
+	/**
+	 * The methods below return the estimated rightmost/leftmost palm velocity (mm/s)
+	 */
+
+	public float getRightVelocityX() {
+		return right.getVelocityX();
+	}
+
+	public float getRightVelocityY() {
+		return right.getVelocityY();
+	}
+
+	public float getLeftVelocityX() {
+		return left.getVelocityX();
+	}
+
+	public float getLeftVelocityY() {
+		return left.getVelocityY();
+	}
+
+	public int getRightFingers() {
+		return rightFingers;
+	}
+
+	public int getLeftFingers() {
+		return leftFingers;
+	}
+
+	/**
+	 * getRightFilter
+	 * @return the filter tracking the rightmost palm, for its z axis or other state
+	 */
+	public PalmFilter getRightFilter() {
+		return right;
+	}
+
+	public PalmFilter getLeftFilter() {
+		return left;
+	}
+}
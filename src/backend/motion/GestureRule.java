@@ -0,0 +1,186 @@
+package backend.motion;
+
+import java.util.Collections;
+
+/**
+ * GestureRule
+ * a declarative gesture: which hands must be present, which way the palms have to move along one axis,
+ * how many fingers each hand may show, which horizontal region the rightmost palm has to be in and the
+ * control it triggers.
+ * Rules are compiled into a GestureRuleSet, which evaluates all of them against one set of features
+ */
+public final class GestureRule implements Detectable {
+
+	/**
+	 * Axis the palm movement is measured on
+	 */
+	public enum Axis {
+		X, Y
+	}
+
+	/*Hand count requirements*/
+	public static final int ANY_HANDS = 0;
+	public static final int ONE_HAND = 1;
+	public static final int TWO_HANDS = 2;
+
+	private final String name;
+	private final int hands;
+	private final Axis axis;
+	private final int rightDirection;
+	private final int leftDirection;
+	private final float threshold;
+	private final int minFingers;
+	private final int maxFingers;
+	private final float minX;
+	private final float maxX;
+	private final String action;
+
+	/*Set the rule was first compiled into and its index there, whose scratch features isDetected uses*/
+	private GestureRuleSet set;
+	private int index;
+
+	/**
+	 * Constructor
+	 * @param name name the gesture is referred to by
+	 * @param hands ANY_HANDS, ONE_HAND or TWO_HANDS
+	 * @param axis axis the palm movement is measured on
+	 * @param rightDirection 1 if the rightmost palm has to move up/right, -1 for down/left, 0 if it does not matter
+	 * @param leftDirection same as rightDirection for the leftmost palm (only checked for TWO_HANDS)
+	 * @param threshold minimum palm speed in mm/s
+	 * @param minFingers minimum number of fingers on every checked hand (inclusive)
+	 * @param maxFingers maximum number of fingers on every checked hand (inclusive)
+	 * @param minX rightmost palm x has to be greater than this
+	 * @param maxX rightmost palm x has to be less than this
+	 * @param action name of the control the gesture triggers, null if it only gets recognized
+	 */
+	public GestureRule(String name, int hands, Axis axis, int rightDirection, int leftDirection, float threshold,
+			int minFingers, int maxFingers, float minX, float maxX, String action) {
+		this.name = name;
+		this.hands = hands;
+		this.axis = axis;
+		this.rightDirection = Integer.signum(rightDirection);
+		this.leftDirection = Integer.signum(leftDirection);
+		this.threshold = threshold;
+		this.minFingers = minFingers;
+		this.maxFingers = maxFingers;
+		this.minX = minX;
+		this.maxX = maxX;
+		this.action = action;
+	}
+
+	/**
+	 * Returns true if the gesture is detected in the snapshot (on its own, the palm velocity is guessed from the
+	 * movement since the previous frame).
+	 * Evaluating a whole GestureRuleSet is cheaper when more than one rule is checked per frame
+	 */
+	@Override
+	public boolean isDetected(FrameSnapshot snapshot) {
+		if (set == null)
+			new GestureRuleSet(Collections.singletonList(this));
+		return set.isDetected(index, snapshot);
+	}
+
+	/**
+	 * Called by the first GestureRuleSet the rule is compiled into
+	 */
+	void compiled(GestureRuleSet set, int index) {
+		if (this.set != null)
+			return;
+		this.set = set;
+		this.index = index;
+	}
+
+	/**
+	 * Returns true if the rule holds for the given features
+	 * @param features
+	 * @return
+	 */
+	public boolean matches(GestureFeatures features) {
+		if (!features.hasHands())
+			return false;
+		if (hands == ONE_HAND && features.getHandCount() != 1)
+			return false;
+		if (hands == TWO_HANDS && !features.hasTwoHands())
+			return false;
+
+		float rightDif = axis == Axis.X ? features.getRightVelocityX() : features.getRightVelocityY();
+		if (!moved(rightDif, rightDirection))
+			return false;
+
+		int rightFingers = features.getRightFingers();
+		if (rightFingers < minFingers || rightFingers > maxFingers)
+			return false;
+
+		if (hands == TWO_HANDS) {
+			float leftDif = axis == Axis.X ? features.getLeftVelocityX() : features.getLeftVelocityY();
+			if (!moved(leftDif, leftDirection))
+				return false;
+
+			int leftFingers = features.getLeftFingers();
+			if (leftFingers < minFingers || leftFingers > maxFingers)
+				return false;
+		}
+
+		float x = features.getRightX();
+		return x > minX && x < maxX;
+	}
+
+	private boolean moved(float dif, int direction) {
+		if (direction > 0)
+			return dif >= threshold;
+		if (direction < 0)
+			return dif <= -threshold;
+		return true;
+	}
+
+	/*ACCESSORS*/
+
+	public String getName() {
+		return name;
+	}
+
+	public int getHands() {
+		return hands;
+	}
+
+	public Axis getAxis() {
+		return axis;
+	}
+
+	public int getRightDirection() {
+		return rightDirection;
+	}
+
+	public int getLeftDirection() {
+		return leftDirection;
+	}
+
+	public float getThreshold() {
+		return threshold;
+	}
+
+	public int getMinFingers() {
+		return minFingers;
+	}
+
+	public int getMaxFingers() {
+		return maxFingers;
+	}
+
+	public float getMinX() {
+		return minX;
+	}
+
+	public float getMaxX() {
+		return maxX;
+	}
+
+	public String getAction() {
+		return action;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,379 @@
+package backend.motion;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * GestureRuleSet
+ * a compiled, ordered list of gesture rules. The rules are flattened into primitive arrays and all of them are
+ * evaluated in one pass over a GestureFeatures instance, producing a bit mask of the rules that matched.
+ * Earlier rules have priority over later ones (see first)
+ *
+ * Rules are read from src/data/gestures.txt, one per line:
+ *   name  hands  axis  right  left  threshold  fingers  x  action
+ * hands is 1, 2 or any; axis is X or Y; right/left are +, - or * (direction the rightmost/leftmost palm
+ * must move, * if it does not matter); threshold is the minimum palm speed in mm/s; fingers is a range like 3..,
+ * 2..2, ..1 or 5; x is an exclusive range for the rightmost palm like -80..80, ..-60, 80.. or *; action is the name of the
+ * control the gesture triggers, - (or left out) for none.
+ * Everything after a # is a comment
+ */
+public final class GestureRuleSet {
+
+	/*Location of the rule file*/
+	public static final String RULES_FILENAME = "gestures.txt";
+
+	/*The mask is a long, so at most 64 rules can be compiled*/
+	public static final int MAX_RULES = 64;
+
+	/*Used when the rule file is missing or cannot be parsed*/
+	private static final String[] DEFAULT_RULES = {
+		"HandsSeperate     2    X  +  -  330  3..   *        STOP",
+		"HandsTogether     2    X  -  +  330  3..   *        PLAY",
+		"VUp               1    Y  +  *  330  2..2  -80..80  VOLUME_UP",
+		"VDown             1    Y  -  *  330  2..2  -80..80  VOLUME_DOWN",
+		"HandsUpRight      1    Y  +  *  330  3..   80..     RAISE_HIGH",
+		"HandsUpMiddle     1    Y  +  *  330  3..   -80..80  RAISE_MID",
+		"HandsUpLeft       1    Y  +  *  330  3..   ..-80    RAISE_BASS",
+		"HandsDownRight    1    Y  -  *  330  3..   80..     LOWER_HIGH",
+		"HandsDownMiddle   1    Y  -  *  330  3..   -80..80  LOWER_MID",
+		"HandsDownLeft     1    Y  -  *  330  3..   ..-60    LOWER_BASS",
+		"TwoHandsUp        2    Y  +  +  330  3..   *        -",
+		"TwoHandsDown      2    Y  -  -  330  3..   *        -",
+		"HandsRight        any  X  +  *  330  3..   *        -",
+		"HandsLeft         any  X  -  *  330  3..   *        -"
+	};
+
+	private final GestureRule[] rules;
+
+	/*Struct of arrays - index i describes rule i*/
+	private final int size;
+	private final int[] hands;
+	private final boolean[] xAxis;
+	private final int[] rightDirection;
+	private final int[] leftDirection;
+	private final float[] threshold;
+	private final int[] minFingers;
+	private final int[] maxFingers;
+	private final float[] minX;
+	private final float[] maxX;
+
+	/*Features of the snapshot a single rule is checked against (see isDetected)*/
+	private final GestureFeatures scratch = new GestureFeatures();
+
+	/**
+	 * Constructor - compiles the rules in priority order
+	 * @param rules
+	 */
+	public GestureRuleSet(List<GestureRule> rules) {
+		if (rules.size() > MAX_RULES)
+			throw new IllegalArgumentException("At most " + MAX_RULES + " gesture rules are supported");
+
+		this.rules = rules.toArray(new GestureRule[rules.size()]);
+		size = this.rules.length;
+		hands = new int[size];
+		xAxis = new boolean[size];
+		rightDirection = new int[size];
+		leftDirection = new int[size];
+		threshold = new float[size];
+		minFingers = new int[size];
+		maxFingers = new int[size];
+		minX = new float[size];
+		maxX = new float[size];
+
+		for (int i = 0; i < size; i++) {
+			GestureRule rule = this.rules[i];
+			hands[i] = rule.getHands();
+			xAxis[i] = rule.getAxis() == GestureRule.Axis.X;
+			rightDirection[i] = rule.getRightDirection();
+			leftDirection[i] = rule.getHands() == GestureRule.TWO_HANDS ? rule.getLeftDirection() : 0;
+			threshold[i] = rule.getThreshold();
+			minFingers[i] = rule.getMinFingers();
+			maxFingers[i] = rule.getMaxFingers();
+			minX[i] = rule.getMinX();
+			maxX[i] = rule.getMaxX();
+			rule.compiled(this, i);
+		}
+	}
+
+	/**
+	 * load
+	 * reads src/data/gestures.txt, falling back to the built in rules if it is missing or invalid
+	 * @return compiled rules
+	 */
+	public static GestureRuleSet load() {
+		File file = new File(System.getProperty("user.dir") + "/src/data/" + RULES_FILENAME);
+		if (file.exists()) {
+			try {
+				return load(file);
+			} catch (IOException e) {
+				System.out.println("ERROR: IOException while reading file " + file.getAbsolutePath());
+			} catch (IllegalArgumentException e) {
+				System.out.println("ERROR: " + e.getMessage() + " in " + file.getAbsolutePath());
+			}
+		}
+		return defaults();
+	}
+
+	/**
+	 * load
+	 * @param file rule file
+	 * @return compiled rules
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if a line cannot be parsed
+	 */
+	public static GestureRuleSet load(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line = in.readLine();
+			while (line != null) {
+				lines.add(line);
+				line = in.readLine();
+			}
+		} finally {
+			in.close();
+		}
+		return parse(lines);
+	}
+
+	/**
+	 * defaults
+	 * @return the built in rules (the gestures leap conductor has always recognized)
+	 */
+	public static GestureRuleSet defaults() {
+		return parse(Arrays.asList(DEFAULT_RULES));
+	}
+
+	/**
+	 * parse
+	 * @param lines rule lines as described in the class comment
+	 * @return compiled rules
+	 * @throws IllegalArgumentException if a line cannot be parsed
+	 */
+	public static GestureRuleSet parse(List<String> lines) {
+		List<GestureRule> rules = new ArrayList<GestureRule>();
+		int lineNumber = 0;
+		for (String line : lines) {
+			lineNumber++;
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			if (line.isEmpty())
+				continue;
+
+			try {
+				rules.add(parseRule(line.split("\\s+")));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid gesture rule on line " + lineNumber + " (" + e.getMessage() + ")");
+			}
+		}
+		return new GestureRuleSet(rules);
+	}
+
+	private static GestureRule parseRule(String[] fields) {
+		if (fields.length != 8 && fields.length != 9)
+			throw new IllegalArgumentException("expected 8 or 9 fields but found " + fields.length);
+
+		int hands;
+		if (fields[1].equalsIgnoreCase("any"))
+			hands = GestureRule.ANY_HANDS;
+		else if (fields[1].equals("1"))
+			hands = GestureRule.ONE_HAND;
+		else if (fields[1].equals("2"))
+			hands = GestureRule.TWO_HANDS;
+		else
+			throw new IllegalArgumentException("hands must be 1, 2 or any");
+
+		GestureRule.Axis axis = GestureRule.Axis.valueOf(fields[2].toUpperCase());
+		int right = parseDirection(fields[3]);
+		int left = parseDirection(fields[4]);
+		float threshold = Float.parseFloat(fields[5]);
+
+		float[] fingers = parseRange(fields[6], 0, Integer.MAX_VALUE);
+		float[] x = parseRange(fields[7], Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+		String action = fields.length == 9 && !fields[8].equals("-") ? fields[8] : null;
+
+		return new GestureRule(fields[0], hands, axis, right, left, threshold,
+				(int) fingers[0], fingers[1] >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) fingers[1], x[0], x[1], action);
+	}
+
+	private static int parseDirection(String field) {
+		if (field.equals("+"))
+			return 1;
+		if (field.equals("-"))
+			return -1;
+		if (field.equals("*"))
+			return 0;
+		throw new IllegalArgumentException("direction must be +, - or *");
+	}
+
+	/**
+	 * Parses "a..b", "a..", "..b", "a" or "*" into {min, max}
+	 */
+	private static float[] parseRange(String field, float min, float max) {
+		if (field.equals("*"))
+			return new float[] {min, max};
+
+		int dots = field.indexOf("..");
+		if (dots < 0) {
+			float value = Float.parseFloat(field);
+			return new float[] {value, value};
+		}
+
+		String low = field.substring(0, dots);
+		String high = field.substring(dots + 2);
+		return new float[] {
+			low.isEmpty() ? min : Float.parseFloat(low),
+			high.isEmpty() ? max : Float.parseFloat(high)
+		};
+	}
+
+	/**
+	 * evaluate
+	 * checks every rule against the features in a single pass
+	 * @param features
+	 * @return bit mask with bit i set if rule i matched
+	 */
+	public long evaluate(GestureFeatures features) {
+		if (!features.hasHands())
+			return 0L;
+
+		boolean oneHand = features.getHandCount() == 1;
+		boolean twoHands = features.hasTwoHands();
+		float rightVelocityX = features.getRightVelocityX();
+		float rightVelocityY = features.getRightVelocityY();
+		float leftVelocityX = features.getLeftVelocityX();
+		float leftVelocityY = features.getLeftVelocityY();
+		float rightX = features.getRightX();
+		int rightFingers = features.getRightFingers();
+		int leftFingers = features.getLeftFingers();
+
+		long mask = 0L;
+		for (int i = 0; i < size; i++) {
+			if (matches(i, oneHand, twoHands, rightVelocityX, rightVelocityY, leftVelocityX, leftVelocityY, rightX,
+					rightFingers, leftFingers))
+				mask |= 1L << i;
+		}
+		return mask;
+	}
+
+	/**
+	 * isDetected
+	 * checks one rule against a snapshot on its own (GestureRule.isDetected), extracting its features into the
+	 * set's scratch features instead of new ones; one thread at a time
+	 * @param index
+	 * @param snapshot
+	 * @return true if rule index matched
+	 */
+	public boolean isDetected(int index, FrameSnapshot snapshot) {
+		scratch.reset();
+		scratch.update(snapshot);
+		if (!scratch.hasHands())
+			return false;
+		return matches(index, scratch.getHandCount() == 1, scratch.hasTwoHands(), scratch.getRightVelocityX(),
+				scratch.getRightVelocityY(), scratch.getLeftVelocityX(), scratch.getLeftVelocityY(),
+				scratch.getRightX(), scratch.getRightFingers(), scratch.getLeftFingers());
+	}
+
+	/**
+	 * Checks rule i against already extracted features
+	 */
+	boolean matches(int i, boolean oneHand, boolean twoHands, float rightVelocityX, float rightVelocityY,
+			float leftVelocityX, float leftVelocityY, float rightX, int rightFingers, int leftFingers) {
+		return staticMatches(i, oneHand, twoHands, rightX, rightFingers)
+				&& movementMatches(i, rightVelocityX, rightVelocityY, leftVelocityX, leftVelocityY, leftFingers);
+	}
+
+	/**
+	 * Checks the parts of rule i that only depend on hand count, rightmost finger count and rightmost palm x
+	 */
+	boolean staticMatches(int i, boolean oneHand, boolean twoHands, float rightX, int rightFingers) {
+		int h = hands[i];
+		if ((h == GestureRule.ONE_HAND && !oneHand) || (h == GestureRule.TWO_HANDS && !twoHands))
+			return false;
+		if (rightFingers < minFingers[i] || rightFingers > maxFingers[i])
+			return false;
+		return rightX > minX[i] && rightX < maxX[i];
+	}
+
+	/**
+	 * Checks the palm movement of rule i (and the leftmost finger count of two hand rules)
+	 */
+	boolean movementMatches(int i, float rightVelocityX, float rightVelocityY, float leftVelocityX, float leftVelocityY,
+			int leftFingers) {
+		float t = threshold[i];
+		int dir = rightDirection[i];
+		float dif = xAxis[i] ? rightVelocityX : rightVelocityY;
+		if ((dir > 0 && dif < t) || (dir < 0 && dif > -t))
+			return false;
+
+		if (hands[i] == GestureRule.TWO_HANDS) {
+			dir = leftDirection[i];
+			dif = xAxis[i] ? leftVelocityX : leftVelocityY;
+			if ((dir > 0 && dif < t) || (dir < 0 && dif > -t))
+				return false;
+			if (leftFingers < minFingers[i] || leftFingers > maxFingers[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * first
+	 * @param mask result of evaluate
+	 * @return index of the highest priority rule in the mask, -1 if none matched
+	 */
+	public static int first(long mask) {
+		return mask == 0L ? -1 : Long.numberOfTrailingZeros(mask);
+	}
+
+	/**
+	 * isSet
+	 * @param mask result of evaluate
+	 * @param index rule index (may be -1)
+	 * @return true if rule index matched
+	 */
+	public static boolean isSet(long mask, int index) {
+		return index >= 0 && (mask & (1L << index)) != 0L;
+	}
+
+	/**
+	 * indexOf
+	 * @param name
+	 * @return index of the rule with the given name, -1 if there is none
+	 */
+	public int indexOf(String name) {
+		for (int i = 0; i < size; i++) {
+			if (rules[i].getName().equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	public GestureRule getRule(int index) {
+		return rules[index];
+	}
+
+	public String getName(int index) {
+		return rules[index].getName();
+	}
+
+	/**
+	 * getAction
+	 * @param index
+	 * @return name of the control rule index triggers, null if it has none
+	 */
+	public String getAction(int index) {
+		return rules[index].getAction();
+	}
+
+	public int size() {
+		return size;
+	}
+}
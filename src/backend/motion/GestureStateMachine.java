@@ -0,0 +1,112 @@
+package backend.motion;
+
+/**
+ * GestureStateMachine
+ * debounces one gesture using the leap frame timestamps (no timers or threads):
+ * IDLE -> CANDIDATE once the gesture is seen, -> ACTIVE once it has been seen for the entry time,
+ * back out of ACTIVE only after it has been gone for the exit time (so a frame or two of dropout does not end it),
+ * then COOLDOWN, during which the gesture is ignored, -> IDLE.
+ * A one-shot gesture fires once when it becomes active; a continuous gesture fires on every active frame it is seen
+ */
+public final class GestureStateMachine {
+
+	public enum State {
+		IDLE, CANDIDATE, ACTIVE, COOLDOWN
+	}
+
+	/*Times in microseconds (leap clock)*/
+	private final long entryTime;
+	private final long exitTime;
+	private final long cooldownTime;
+	private final boolean continuous;
+
+	private State state = State.IDLE;
+	private long since;
+	private long lastSeen;
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	/**
+	 * Constructor
+	 * @param entryTime how long the gesture has to be seen before it becomes active (0 = right away)
+	 * @param exitTime how long it has to be gone before it stops being active
+	 * @param cooldownTime how long it is ignored after it stopped being active
+	 * @param continuous true to fire on every active frame, false to fire once per activation
+	 */
+	public GestureStateMachine(long entryTime, long exitTime, long cooldownTime, boolean continuous) {
+		this.entryTime = entryTime;
+		this.exitTime = exitTime;
+		this.cooldownTime = cooldownTime;
+		this.continuous = continuous;
+	}
+
+	/**
+	 * update
+	 * advances the state machine by one frame
+	 * @param seen whether the gesture is detected in this frame
+	 * @param timestamp frame timestamp in microseconds
+	 * @return true if the gesture fires in this frame
+	 */
+	public boolean update(boolean seen, long timestamp) {
+		// the clock went backwards (new device or a replay starting over)
+		if (timestamp < lastTimestamp)
+			reset();
+		lastTimestamp = timestamp;
+
+		if (state == State.COOLDOWN) {
+			if (timestamp - since < cooldownTime)
+				return false;
+			state = State.IDLE;
+		}
+
+		if (state == State.ACTIVE) {
+			if (seen) {
+				lastSeen = timestamp;
+				return continuous;
+			}
+			if (timestamp - lastSeen >= exitTime) {
+				state = cooldownTime > 0 ? State.COOLDOWN : State.IDLE;
+				since = timestamp;
+			}
+			return false;
+		}
+
+		if (!seen) {
+			state = State.IDLE;
+			return false;
+		}
+		if (state == State.IDLE) {
+			state = State.CANDIDATE;
+			since = timestamp;
+		}
+		if (timestamp - since >= entryTime) {
+			state = State.ACTIVE;
+			lastSeen = timestamp;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * reset
+	 * back to IDLE, forgetting any cooldown
+	 */
+	public void reset() {
+		state = State.IDLE;
+		lastTimestamp = Long.MIN_VALUE;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * Returns true while the gesture is active (including the exit time after it was last seen)
+	 */
+	public boolean isActive() {
+		return state == State.ACTIVE;
+	}
+
+	public boolean isContinuous() {
+		return continuous;
+	}
+}
@@ -0,0 +1,168 @@
+package backend.motion;
+
+/**
+ * PalmFilter
+ * a constant-velocity Kalman filter tracking one palm in 3D. Every frame it predicts where the palm should be from
+ * its last position and velocity, then corrects that guess with the measured position, weighing the two by how
+ * much each is trusted. The result is a smoothed position and a velocity estimate (mm/s) that follow real motion
+ * closely but ignore most of the frame to frame jitter of the measured position.
+ * The three axes are filtered independently with the same noise model, so they share one 2x2 covariance;
+ * the whole state is a handful of primitive fields and an update allocates nothing
+ */
+public final class PalmFilter {
+
+	/*Standard deviation of the measured palm position (mm)*/
+	public static final float DEFAULT_MEASUREMENT_NOISE = 2f;
+
+	/*Standard deviation of the palm's acceleration between frames (mm/s^2), how quickly the velocity may change*/
+	public static final float DEFAULT_ACCELERATION_NOISE = 4000f;
+
+	/*Standard deviation of the velocity guessed when tracking starts (mm/s)*/
+	private static final float INITIAL_VELOCITY_NOISE = 500f;
+
+	/*Gap between frames (s) after which the palm is tracked from scratch*/
+	private static final double MAX_GAP = 0.25;
+
+	private final double measurementVariance;
+	private final double accelerationVariance;
+
+	/*State: position (mm) and velocity (mm/s) per axis*/
+	private double x, y, z;
+	private double vx, vy, vz;
+
+	/*Covariance shared by the three axes: position variance, position/velocity covariance, velocity variance*/
+	private double pp, pv, vv;
+
+	private long timestamp;
+	private boolean tracking = false;
+
+	public PalmFilter() {
+		this(DEFAULT_MEASUREMENT_NOISE, DEFAULT_ACCELERATION_NOISE);
+	}
+
+	/**
+	 * Constructor
+	 * @param measurementNoise standard deviation of the measured position (mm)
+	 * @param accelerationNoise standard deviation of the palm's acceleration (mm/s^2)
+	 */
+	public PalmFilter(float measurementNoise, float accelerationNoise) {
+		measurementVariance = (double) measurementNoise * measurementNoise;
+		accelerationVariance = (double) accelerationNoise * accelerationNoise;
+	}
+
+	/**
+	 * start
+	 * starts tracking a palm from scratch
+	 * @param timestamp of the measurement in microseconds
+	 * @param x measured position (mm)
+	 * @param y
+	 * @param z
+	 * @param vx velocity guess (mm/s), e.g. from the movement since the previous frame
+	 * @param vy
+	 * @param vz
+	 */
+	public void start(long timestamp, float x, float y, float z, float vx, float vy, float vz) {
+		this.timestamp = timestamp;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.vx = vx;
+		this.vy = vy;
+		this.vz = vz;
+		pp = measurementVariance;
+		pv = 0;
+		vv = (double) INITIAL_VELOCITY_NOISE * INITIAL_VELOCITY_NOISE;
+		tracking = true;
+	}
+
+	/**
+	 * update
+	 * predicts the palm forward to the measurement's time and corrects it with the measurement.
+	 * If the filter is not tracking yet, or the last measurement is too long ago, tracking starts over at rest
+	 * @param timestamp of the measurement in microseconds
+	 * @param mx measured position (mm)
+	 * @param my
+	 * @param mz
+	 */
+	public void update(long timestamp, float mx, float my, float mz) {
+		double dt = (timestamp - this.timestamp) / 1e6;
+		if (!tracking || dt > MAX_GAP || dt < 0) {
+			start(timestamp, mx, my, mz, 0, 0, 0);
+			return;
+		}
+		this.timestamp = timestamp;
+
+		if (dt > 0) {
+			// predict: x += v * dt, P = F P F' + Q (white noise acceleration)
+			x += vx * dt;
+			y += vy * dt;
+			z += vz * dt;
+			double dt2 = dt * dt;
+			double q = accelerationVariance;
+			pp += dt * (2 * pv + dt * vv) + q * dt2 * dt2 / 4;
+			pv += dt * vv + q * dt2 * dt / 2;
+			vv += q * dt2;
+		}
+
+		// correct with gain K = P H' / (H P H' + R)
+		double s = pp + measurementVariance;
+		double kp = pp / s;
+		double kv = pv / s;
+		double rx = mx - x, ry = my - y, rz = mz - z;
+		x += kp * rx;
+		y += kp * ry;
+		z += kp * rz;
+		vx += kv * rx;
+		vy += kv * ry;
+		vz += kv * rz;
+		vv -= kv * pv;
+		pv *= 1 - kp;
+		pp *= 1 - kp;
+	}
+
+	/**
+	 * reset
+	 * stops tracking, the next update starts from scratch
+	 */
+	public void reset() {
+		tracking = false;
+	}
+
+	/*ACCESSORS*/
+
+	public boolean isTracking() {
+		return tracking;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public float getX() {
+		return (float) x;
+	}
+
+	public float getY() {
+		return (float) y;
+	}
+
+	public float getZ() {
+		return (float) z;
+	}
+
+	/**
+	 * The methods below return the estimated velocity in mm/s
+	 */
+
+	public float getVelocityX() {
+		return (float) vx;
+	}
+
+	public float getVelocityY() {
+		return (float) vy;
+	}
+
+	public float getVelocityZ() {
+		return (float) vz;
+	}
+}
@@ -0,0 +1,80 @@
+package backend.motion;
+
+/**
+ * RateLimitedSmoother
+ * follows a target value (e.g. a control level driven by the palm) at a limited rate, using the leap frame
+ * timestamps. Jumps of at least the snap distance are taken at once, so a deliberate large move is never dragged
+ * out, and the output only counts as changed once it has moved by the resolution, so a hand held almost still
+ * does not cause a property write every frame
+ */
+public final class RateLimitedSmoother {
+
+	private final float maxRate;
+	private final float snapDistance;
+	private final float resolution;
+
+	private float value;
+	private float output;
+	private long timestamp;
+	private boolean started = false;
+
+	/**
+	 * Constructor
+	 * @param maxRate largest change per second
+	 * @param snapDistance target changes at least this big are applied at once
+	 * @param resolution smallest change of the output worth reporting
+	 */
+	public RateLimitedSmoother(float maxRate, float snapDistance, float resolution) {
+		this.maxRate = maxRate;
+		this.snapDistance = snapDistance;
+		this.resolution = resolution;
+	}
+
+	/**
+	 * update
+	 * moves toward the target; the first update after a reset starts at the target
+	 * @param target
+	 * @param timestamp in microseconds
+	 * @return true if the output changed
+	 */
+	public boolean update(float target, long timestamp) {
+		if (!started || timestamp < this.timestamp) {
+			value = output = target;
+			this.timestamp = timestamp;
+			started = true;
+			return true;
+		}
+
+		float difference = target - value;
+		if (Math.abs(difference) >= snapDistance) {
+			value = target;
+		}
+		else {
+			float step = maxRate * (timestamp - this.timestamp) / 1e6f;
+			value += Math.max(-step, Math.min(step, difference));
+		}
+		this.timestamp = timestamp;
+
+		if (Math.abs(value - output) >= resolution) {
+			output = value;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * reset
+	 * the next update starts at its target
+	 */
+	public void reset() {
+		started = false;
+	}
+
+	/**
+	 * getValue
+	 * @return the output, which only changes in steps of at least the resolution
+	 */
+	public float getValue() {
+		return output;
+	}
+}
@@ -0,0 +1,9 @@
+package backend.motion;
+
+/**
+ * SnapshotHandler
+ * anything that processes frame snapshots - the leap listener for live frames, or a replay/benchmark for recorded ones
+ */
+public interface SnapshotHandler {
+	public void onSnapshot(FrameSnapshot snapshot);
+}
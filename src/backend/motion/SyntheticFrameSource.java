@@ -0,0 +1,301 @@
+package backend.motion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SyntheticFrameSource
+ * generates repeatable hand motion as frame snapshots, so the gesture pipeline can be driven without the device:
+ * either a random walk of up to two hands, or a script of conductor motions (volume V, raising/lowering a band,
+ * bringing hands together and apart, a four beat pattern, circles, swipes, resting fists).
+ * Tracking noise (gaussian jitter of the palm positions) and dropouts (frames where the hands are lost) can be
+ * added. Snapshots go to a SnapshotHandler (e.g. a LeapListener) at any frame rate, including far above the
+ * device's, or as fast as the handler takes them
+ */
+public class SyntheticFrameSource {
+
+	public enum Pattern {
+		RANDOM_WALK, CONDUCTOR
+	}
+
+	/*Conductor script: each motion lasts one second of frame time*/
+	private static final int V_UP = 0, V_DOWN = 1, BAND_UP = 2, BAND_DOWN = 3, TOGETHER = 4, APART = 5,
+			BEAT = 6, CIRCLE = 7, SWIPE = 8, REST = 9, MOTIONS = 10;
+
+	/*Palm speed of scripted and random motion in mm/s*/
+	private static final float SPEED = 400;
+
+	private final Random random;
+	private Pattern pattern = Pattern.CONDUCTOR;
+	private int maxHands = 2;
+	private float noise = 0;
+	private float dropout = 0;
+	private double fps = 110;
+
+	/*Current frame*/
+	private long frame = 0;
+	private double time = 0;
+	private int handCount = 0;
+	private int rightFingers = 0, leftFingers = 0;
+	private float rx = 0, ry = 200, lx = 0, ly = 200;
+	private float rvx = 0, rvy = 0, lvx = 0, lvy = 0;
+	private int motion = -1;
+	private int region = 0;
+
+	/*Previous frame as reported (after noise and dropouts)*/
+	private int prevHandCount = 0;
+	private float prevRightX, prevRightY, prevRightZ, prevLeftX, prevLeftY, prevLeftZ;
+
+	/**
+	 * Constructor
+	 * @param seed the same seed and settings always generate the same frames
+	 */
+	public SyntheticFrameSource(long seed) {
+		random = new Random(seed);
+	}
+
+	/*SETTINGS*/
+
+	public void setPattern(Pattern pattern) {
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Sets the most hands the random walk uses (0 to 2); the conductor script uses what each motion needs
+	 */
+	public void setMaxHands(int maxHands) {
+		this.maxHands = Math.max(0, Math.min(2, maxHands));
+	}
+
+	/**
+	 * Sets the standard deviation of the palm position jitter in mm
+	 */
+	public void setNoise(float noise) {
+		this.noise = noise;
+	}
+
+	/**
+	 * Sets the chance (0 to 1) that a frame loses its hands
+	 */
+	public void setDropout(float dropout) {
+		this.dropout = dropout;
+	}
+
+	/**
+	 * Sets the frame rate the timestamps and the motion per frame are generated for
+	 */
+	public void setFps(double fps) {
+		this.fps = fps;
+	}
+
+	/**
+	 * next
+	 * @return the next frame
+	 */
+	public FrameSnapshot next() {
+		int framesPerMotion = (int) Math.max(1, Math.round(fps));
+		if (frame % framesPerMotion == 0)
+			startMotion();
+		float step = (float) (SPEED / fps);
+		int circles = 0;
+		float swipeX = 0;
+		long inMotion = frame % framesPerMotion;
+
+		if (pattern == Pattern.CONDUCTOR && motion == BEAT) {
+			// down, left, right, up - a quarter of the motion each
+			int beat = (int) (4 * inMotion / framesPerMotion);
+			rvx = beat == 1 ? -1 : beat == 2 ? 1 : 0;
+			rvy = beat == 0 ? -1 : beat == 3 ? 1 : 0;
+		}
+		else if (pattern == Pattern.CONDUCTOR && motion == CIRCLE) {
+			double angle = 2 * Math.PI * inMotion / framesPerMotion;
+			rvx = (float) -Math.sin(angle);
+			rvy = (float) Math.cos(angle);
+			circles = 1;
+		}
+		else if (pattern == Pattern.CONDUCTOR && motion == SWIPE && inMotion == framesPerMotion / 2) {
+			swipeX = region < 0 ? -0.9f : 0.9f;
+		}
+
+		rx = bound(rx + rvx * step, -250, 250);
+		ry = bound(ry + rvy * step, 50, 450);
+		lx = bound(lx + lvx * step, -250, 250);
+		ly = bound(ly + lvy * step, 50, 450);
+
+		// what the device reports: noise, dropouts, rightmost/leftmost order
+		int hands = random.nextFloat() < dropout ? 0 : handCount;
+		float ax = rx + jitter(), ay = ry + jitter(), az = jitter();
+		float bx = lx + jitter(), by = ly + jitter(), bz = jitter();
+		float rightX = 0, rightY = 0, rightZ = 0, leftX = 0, leftY = 0, leftZ = 0;
+		int right = 0, left = 0;
+		if (hands == 1) {
+			rightX = leftX = ax;
+			rightY = leftY = ay;
+			rightZ = leftZ = az;
+			right = left = rightFingers;
+		}
+		else if (hands == 2) {
+			boolean swapped = bx > ax;
+			rightX = swapped ? bx : ax;
+			rightY = swapped ? by : ay;
+			rightZ = swapped ? bz : az;
+			right = swapped ? leftFingers : rightFingers;
+			leftX = swapped ? ax : bx;
+			leftY = swapped ? ay : by;
+			leftZ = swapped ? az : bz;
+			left = swapped ? rightFingers : leftFingers;
+		}
+
+		boolean clockwise = motion == CIRCLE && region >= 0;
+		FrameSnapshot snapshot = new FrameSnapshot((long) time, hands, prevHandCount,
+				rightX, rightY, rightZ, right,
+				leftX, leftY, leftZ, left,
+				prevRightX, prevRightY, prevRightZ,
+				prevLeftX, prevLeftY, prevLeftZ,
+				hands > 0 && clockwise ? circles : 0, hands > 0 && !clockwise ? circles : 0,
+				hands > 0 ? swipeX : 0, 0);
+
+		prevHandCount = hands;
+		prevRightX = rightX;
+		prevRightY = rightY;
+		prevRightZ = rightZ;
+		prevLeftX = leftX;
+		prevLeftY = leftY;
+		prevLeftZ = leftZ;
+		frame++;
+		time += 1000000 / fps;
+		return snapshot;
+	}
+
+	/**
+	 * Picks the next motion: a new random direction/hand count, or the next step of the conductor script
+	 */
+	private void startMotion() {
+		if (pattern == Pattern.RANDOM_WALK) {
+			handCount = random.nextInt(maxHands + 1);
+			rightFingers = random.nextInt(6);
+			leftFingers = random.nextInt(6);
+			rvx = random.nextFloat() * 2 - 1;
+			rvy = random.nextFloat() * 2 - 1;
+			lvx = random.nextFloat() * 2 - 1;
+			lvy = random.nextFloat() * 2 - 1;
+			return;
+		}
+
+		motion = (motion + 1) % MOTIONS;
+		region = random.nextInt(3) - 1;
+		handCount = 1;
+		rx = region * 150;
+		lx = rx;
+		rvx = rvy = lvx = lvy = 0;
+		switch (motion) {
+		case V_UP:
+		case V_DOWN:
+			rx = 0;
+			rightFingers = 2;
+			rvy = motion == V_UP ? 1 : -1;
+			break;
+		case BAND_UP:
+		case BAND_DOWN:
+			rightFingers = 5;
+			rvy = motion == BAND_UP ? 1 : -1;
+			break;
+		case TOGETHER:
+		case APART:
+			handCount = 2;
+			rightFingers = leftFingers = 5;
+			rx = motion == TOGETHER ? 200 : 20;
+			lx = -rx;
+			rvx = motion == TOGETHER ? -1 : 1;
+			lvx = -rvx;
+			ly = ry;
+			break;
+		case BEAT:
+			rightFingers = 4;
+			break;
+		case CIRCLE:
+			rightFingers = 1;
+			break;
+		case SWIPE:
+			rightFingers = 5;
+			break;
+		default:
+			rightFingers = 0;
+			break;
+		}
+	}
+
+	private float jitter() {
+		return noise == 0 ? 0 : (float) random.nextGaussian() * noise;
+	}
+
+	private static float bound(float val, float min, float max) {
+		return Math.max(min, Math.min(max, val));
+	}
+
+	/**
+	 * generate
+	 * @param frames
+	 * @return the next frames
+	 */
+	public List<FrameSnapshot> generate(int frames) {
+		List<FrameSnapshot> snapshots = new ArrayList<FrameSnapshot>(frames);
+		for (int i = 0; i < frames; i++)
+			snapshots.add(next());
+		return snapshots;
+	}
+
+	/**
+	 * run
+	 * feeds frames to the handler at the given rate on the calling thread (the frames are generated for that rate);
+	 * a frame whose handler call starts more than one frame interval late counts as late, and late frames are fed
+	 * back to back until the schedule is caught up
+	 * @param handler
+	 * @param rate frames per second, 0 or less for as fast as the handler takes them
+	 * @param frames number of frames
+	 * @return number of late frames
+	 */
+	public long run(SnapshotHandler handler, double rate, long frames) {
+		long interval = rate > 0 ? (long) (1e9 / rate) : 0;
+		if (rate > 0)
+			fps = rate;
+		long due = System.nanoTime();
+		long late = 0;
+		for (long i = 0; i < frames && !Thread.currentThread().isInterrupted(); i++) {
+			FrameSnapshot snapshot = next();
+			if (interval > 0) {
+				long wait = due - System.nanoTime();
+				if (wait > 200000)
+					LockSupport.parkNanos(wait);
+				while (due - System.nanoTime() > 0)
+					Thread.yield();
+				if (System.nanoTime() - due > interval)
+					late++;
+				due += interval;
+			}
+			handler.onSnapshot(snapshot);
+		}
+		return late;
+	}
+
+	/**
+	 * start
+	 * runs on a new daemon thread until interrupted
+	 * @param handler
+	 * @param rate frames per second
+	 * @return the generating thread
+	 */
+	public Thread start(final SnapshotHandler handler, final double rate) {
+		Thread t = new Thread("Synthetic Frames") {
+			@Override
+			public void run() {
+				SyntheticFrameSource.this.run(handler, rate, Long.MAX_VALUE);
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+}
@@ -0,0 +1,309 @@
+package backend.motion;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * TrajectoryRecognizer
+ * recognizes motions that take longer than a frame (beat patterns, swells...) by matching the recent path of the
+ * rightmost palm against a library of recorded TrajectoryTemplates with dynamic time warping.
+ * It is fed the GestureFeatures of every frame (so it sees the same filtered palm path as the rules); every frame the last template-duration of the path is resampled and compared
+ * with each template, cheapest test first: the LB_Keogh lower bound skips templates that cannot beat the best
+ * distance so far, and the banded DTW gives up as soon as a whole row is over it. Nothing is allocated per frame
+ */
+public class TrajectoryRecognizer {
+
+	public static final String TEMPLATES_FILENAME = "trajectories.txt";
+
+	/*Frames of palm path kept, enough for about 2.5 s at the leap's frame rate*/
+	public static final int HISTORY_FRAMES = 256;
+
+	/*Default Sakoe-Chiba band, in template points*/
+	public static final int DEFAULT_BAND = TrajectoryTemplate.POINTS / 10;
+
+	/*Paths with a smaller RMS radius (mm) are a resting hand, not a motion*/
+	private static final float MIN_RADIUS = 15;
+
+	private final TrajectoryTemplate[] templates;
+	private final FrameHistory history = new FrameHistory(HISTORY_FRAMES);
+
+	/*Work arrays: path samples in time order and the resampled, normalized path*/
+	private final long[] times = new long[HISTORY_FRAMES];
+	private final float[] xs = new float[HISTORY_FRAMES];
+	private final float[] ys = new float[HISTORY_FRAMES];
+	private final float[] queryX = new float[TrajectoryTemplate.POINTS];
+	private final float[] queryY = new float[TrajectoryTemplate.POINTS];
+	private long queryDuration = -1;
+	private boolean queryValid;
+
+	/*DTW rows*/
+	private final float[] previousRow = new float[TrajectoryTemplate.POINTS];
+	private final float[] currentRow = new float[TrajectoryTemplate.POINTS];
+
+	/*Counters: templates compared in full, pruned by the lower bound and abandoned during DTW*/
+	private long compared = 0;
+	private long pruned = 0;
+	private long abandoned = 0;
+	private float lastDistance = Float.POSITIVE_INFINITY;
+
+	/**
+	 * Constructor
+	 * @param templates trajectories to look for
+	 */
+	public TrajectoryRecognizer(List<TrajectoryTemplate> templates) {
+		this.templates = templates.toArray(new TrajectoryTemplate[templates.size()]);
+		// templates of the same duration share one resampled path
+		Arrays.sort(this.templates, new Comparator<TrajectoryTemplate>() {
+			@Override
+			public int compare(TrajectoryTemplate a, TrajectoryTemplate b) {
+				return Long.compare(a.getDuration(), b.getDuration());
+			}
+		});
+	}
+
+	/**
+	 * load
+	 * reads the templates listed in src/data/trajectories.txt; no file means no templates
+	 * @return recognizer for the listed templates
+	 */
+	public static TrajectoryRecognizer load() {
+		File dir = new File(System.getProperty("user.dir") + "/src/data/");
+		File file = new File(dir, TEMPLATES_FILENAME);
+		List<TrajectoryTemplate> templates = new ArrayList<TrajectoryTemplate>();
+		if (!file.exists())
+			return new TrajectoryRecognizer(templates);
+
+		try {
+			BufferedReader in = new BufferedReader(new FileReader(file));
+			try {
+				String line = in.readLine();
+				while (line != null) {
+					TrajectoryTemplate template = parse(line, dir);
+					if (template != null)
+						templates.add(template);
+					line = in.readLine();
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			System.out.println("ERROR: IOException while reading file " + file.getAbsolutePath());
+		}
+		return new TrajectoryRecognizer(templates);
+	}
+
+	/**
+	 * parse
+	 * reads a template line: name  recording  [action]  [threshold]
+	 * @param line
+	 * @param dir directory recordings are relative to
+	 * @return template, null for blank/comment lines and recordings that cannot be used
+	 */
+	static TrajectoryTemplate parse(String line, File dir) {
+		int comment = line.indexOf('#');
+		if (comment >= 0)
+			line = line.substring(0, comment);
+		line = line.trim();
+		if (line.isEmpty())
+			return null;
+
+		String[] fields = line.split("\\s+");
+		if (fields.length < 2) {
+			System.out.println("ERROR: trajectory needs a name and a recording: " + line);
+			return null;
+		}
+		String action = fields.length > 2 && !fields[2].equals("-") ? fields[2] : null;
+		float threshold = TrajectoryTemplate.DEFAULT_THRESHOLD;
+		if (fields.length > 3) {
+			try {
+				threshold = Float.parseFloat(fields[3]);
+			} catch (NumberFormatException e) {
+				System.out.println("ERROR: invalid threshold " + fields[3] + " for trajectory " + fields[0]);
+				return null;
+			}
+		}
+
+		File recording = new File(dir, fields[1]);
+		try {
+			TrajectoryTemplate template = TrajectoryTemplate.fromRecording(fields[0], action,
+					FrameRecorder.read(recording), threshold, DEFAULT_BAND);
+			if (template == null)
+				System.out.println("ERROR: recording " + recording + " has no hand motion");
+			return template;
+		} catch (IOException e) {
+			System.out.println("ERROR: could not read trajectory " + fields[0] + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * recognize
+	 * adds the frame's filtered palm position to the path and looks for a template ending at this frame.
+	 * After a match the path is cleared, so one motion is only recognized once
+	 * @param features of the frame, already updated
+	 * @return index of the closest matching template, -1 if none matches
+	 */
+	public int recognize(GestureFeatures features) {
+		history.add(features);
+		lastDistance = Float.POSITIVE_INFINITY;
+		if (templates.length == 0 || features.getHandCount() == 0)
+			return -1;
+
+		queryDuration = -1;
+		int best = -1;
+		float bestDistance = Float.POSITIVE_INFINITY;
+		for (int i = 0; i < templates.length; i++) {
+			TrajectoryTemplate template = templates[i];
+			if (template.getDuration() != queryDuration) {
+				queryDuration = template.getDuration();
+				queryValid = buildQuery(queryDuration);
+			}
+			if (!queryValid)
+				continue;
+
+			// distances are compared as sums over the points
+			float limit = Math.min(bestDistance, template.getThreshold()) * TrajectoryTemplate.POINTS;
+			if (lowerBound(template, limit) > limit) {
+				pruned++;
+				continue;
+			}
+			float distance = dtw(template, limit);
+			if (distance > limit) {
+				abandoned++;
+				continue;
+			}
+			compared++;
+			bestDistance = distance / TrajectoryTemplate.POINTS;
+			best = i;
+		}
+
+		if (best >= 0) {
+			lastDistance = bestDistance;
+			history.clear();
+		}
+		return best;
+	}
+
+	/**
+	 * Resamples and normalizes the part of the path that covers the given duration
+	 * @return false if the path is shorter than that or the palm did not really move
+	 */
+	private boolean buildQuery(long duration) {
+		int available = history.samples(HISTORY_FRAMES);
+		if (available < 2)
+			return false;
+		long newest = history.getTimestamp(0);
+		int n = 0;
+		while (n < available && newest - history.getTimestamp(n) < duration)
+			n++;
+		if (n == available)
+			return false;
+		n++;
+
+		for (int age = n - 1, i = 0; age >= 0; age--, i++) {
+			times[i] = history.getTimestamp(age);
+			xs[i] = history.get(FrameHistory.RIGHT_X, age);
+			ys[i] = history.get(FrameHistory.RIGHT_Y, age);
+		}
+		TrajectoryTemplate.resample(times, xs, ys, 0, n, queryX, queryY);
+		return TrajectoryTemplate.normalize(queryX, queryY) >= MIN_RADIUS;
+	}
+
+	/**
+	 * LB_Keogh: squared distance from each query point to the template's envelope, stopping once over the limit
+	 */
+	private float lowerBound(TrajectoryTemplate template, float limit) {
+		float[] lx = template.getLowerX(), ux = template.getUpperX();
+		float[] ly = template.getLowerY(), uy = template.getUpperY();
+		float sum = 0;
+		for (int i = 0; i < TrajectoryTemplate.POINTS && sum <= limit; i++) {
+			float dx = queryX[i] > ux[i] ? queryX[i] - ux[i] : queryX[i] < lx[i] ? lx[i] - queryX[i] : 0;
+			float dy = queryY[i] > uy[i] ? queryY[i] - uy[i] : queryY[i] < ly[i] ? ly[i] - queryY[i] : 0;
+			sum += dx * dx + dy * dy;
+		}
+		return sum;
+	}
+
+	/**
+	 * DTW within the template's band; returns infinity as soon as a whole row is over the limit
+	 */
+	private float dtw(TrajectoryTemplate template, float limit) {
+		final int n = TrajectoryTemplate.POINTS;
+		final int band = template.getBand();
+		float[] tx = template.getX(), ty = template.getY();
+		float[] prev = previousRow, cur = currentRow;
+
+		for (int i = 0; i < n; i++) {
+			int from = Math.max(0, i - band), to = Math.min(n - 1, i + band);
+			float rowMin = Float.POSITIVE_INFINITY;
+			for (int j = 0; j < n; j++) {
+				if (j < from || j > to) {
+					cur[j] = Float.POSITIVE_INFINITY;
+					continue;
+				}
+				float dx = queryX[i] - tx[j], dy = queryY[i] - ty[j];
+				float cost = dx * dx + dy * dy;
+				float before;
+				if (i == 0 && j == 0)
+					before = 0;
+				else {
+					before = Float.POSITIVE_INFINITY;
+					if (i > 0)
+						before = Math.min(before, prev[j]);
+					if (j > 0)
+						before = Math.min(before, cur[j - 1]);
+					if (i > 0 && j > 0)
+						before = Math.min(before, prev[j - 1]);
+				}
+				cur[j] = cost + before;
+				rowMin = Math.min(rowMin, cur[j]);
+			}
+			if (rowMin > limit)
+				return Float.POSITIVE_INFINITY;
+			float[] swap = prev;
+			prev = cur;
+			cur = swap;
+		}
+		return prev[n - 1];
+	}
+
+	/*ACCESSORS*/
+
+	public int size() {
+		return templates.length;
+	}
+
+	public TrajectoryTemplate getTemplate(int index) {
+		return templates[index];
+	}
+
+	/**
+	 * Returns the DTW distance of the last match, infinity if the last frame matched nothing
+	 */
+	public float getLastDistance() {
+		return lastDistance;
+	}
+
+	/**
+	 * The counters below show how much work the pruning saves: templates compared in full (and matched),
+	 * skipped by the lower bound, and abandoned during DTW
+	 */
+
+	public long getCompared() {
+		return compared;
+	}
+
+	public long getPruned() {
+		return pruned;
+	}
+
+	public long getAbandoned() {
+		return abandoned;
+	}
+}
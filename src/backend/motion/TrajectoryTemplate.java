@@ -0,0 +1,209 @@
+package backend.motion;
+
+import java.util.List;
+
+/**
+ * TrajectoryTemplate
+ * a recorded palm path (rightmost palm, x/y plane) a TrajectoryRecognizer looks for. The path is resampled to a
+ * fixed number of points evenly spread over its duration and normalized (centered on its mean and scaled to unit
+ * RMS radius), so the same motion made a bit bigger, smaller or elsewhere still matches. The lower/upper envelope
+ * used for LB_Keogh pruning is computed once here
+ */
+public final class TrajectoryTemplate {
+
+	/*Points every path is resampled to*/
+	public static final int POINTS = 32;
+
+	/*Default largest DTW distance (mean squared distance per point in normalized units) that still matches*/
+	public static final float DEFAULT_THRESHOLD = 0.15f;
+
+	private final String name;
+	private final String action;
+	private final long duration;
+	private final float threshold;
+	private final float[] x, y;
+
+	/*LB_Keogh envelope for the band it was computed for*/
+	private final int band;
+	private final float[] lowerX, upperX, lowerY, upperY;
+
+	/**
+	 * Constructor
+	 * @param name
+	 * @param action control the trajectory triggers (see hub.ControlAction), null for none
+	 * @param duration length of the motion in microseconds
+	 * @param threshold largest DTW distance that still matches
+	 * @param x normalized path, POINTS long
+	 * @param y
+	 * @param band Sakoe-Chiba band width in points
+	 */
+	public TrajectoryTemplate(String name, String action, long duration, float threshold, float[] x, float[] y,
+			int band) {
+		if (x.length != POINTS || y.length != POINTS)
+			throw new IllegalArgumentException("template " + name + " must have " + POINTS + " points");
+		this.name = name;
+		this.action = action;
+		this.duration = duration;
+		this.threshold = threshold;
+		this.x = x;
+		this.y = y;
+		this.band = band;
+		lowerX = new float[POINTS];
+		upperX = new float[POINTS];
+		lowerY = new float[POINTS];
+		upperY = new float[POINTS];
+		envelope(x, lowerX, upperX, band);
+		envelope(y, lowerY, upperY, band);
+	}
+
+	private static void envelope(float[] values, float[] lower, float[] upper, int band) {
+		for (int i = 0; i < values.length; i++) {
+			float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+			for (int j = Math.max(0, i - band); j <= Math.min(values.length - 1, i + band); j++) {
+				min = Math.min(min, values[j]);
+				max = Math.max(max, values[j]);
+			}
+			lower[i] = min;
+			upper[i] = max;
+		}
+	}
+
+	/**
+	 * fromRecording
+	 * builds a template from the filtered palm path (see GestureFeatures) of the frames of a recording that have
+	 * at least one hand
+	 * @param name
+	 * @param action control the trajectory triggers, null for none
+	 * @param snapshots recorded frames (see FrameRecorder)
+	 * @param threshold
+	 * @param band
+	 * @return template, null if the recording has fewer than two frames with a hand or no movement
+	 */
+	public static TrajectoryTemplate fromRecording(String name, String action, List<FrameSnapshot> snapshots,
+			float threshold, int band) {
+		int n = 0;
+		for (FrameSnapshot s : snapshots)
+			if (s.getHandCount() > 0)
+				n++;
+		if (n < 2)
+			return null;
+
+		long[] times = new long[n];
+		float[] xs = new float[n], ys = new float[n];
+		GestureFeatures features = new GestureFeatures();
+		int i = 0;
+		for (FrameSnapshot s : snapshots) {
+			features.update(s);
+			if (s.getHandCount() > 0) {
+				times[i] = s.getTimestamp();
+				xs[i] = features.getRightX();
+				ys[i] = features.getRightY();
+				i++;
+			}
+		}
+
+		float[] x = new float[POINTS], y = new float[POINTS];
+		resample(times, xs, ys, 0, n, x, y);
+		if (normalize(x, y) == 0)
+			return null;
+		return new TrajectoryTemplate(name, action, times[n - 1] - times[0], threshold, x, y, band);
+	}
+
+	/**
+	 * resample
+	 * linearly interpolates samples from..to-1 (in time order) at x.length evenly spaced times
+	 */
+	static void resample(long[] times, float[] xs, float[] ys, int from, int to, float[] x, float[] y) {
+		long start = times[from];
+		double step = (double) (times[to - 1] - start) / (x.length - 1);
+		int j = from;
+		for (int i = 0; i < x.length; i++) {
+			double t = start + i * step;
+			while (j < to - 2 && times[j + 1] < t)
+				j++;
+			long span = times[j + 1] - times[j];
+			float f = span <= 0 ? 0 : (float) Math.min(1, Math.max(0, (t - times[j]) / span));
+			x[i] = xs[j] + (xs[j + 1] - xs[j]) * f;
+			y[i] = ys[j] + (ys[j + 1] - ys[j]) * f;
+		}
+	}
+
+	/**
+	 * normalize
+	 * centers the path on its mean and scales it to unit RMS radius
+	 * @return RMS radius before scaling (mm), 0 if the path does not move (left unscaled)
+	 */
+	static float normalize(float[] x, float[] y) {
+		float mx = 0, my = 0;
+		for (int i = 0; i < x.length; i++) {
+			mx += x[i];
+			my += y[i];
+		}
+		mx /= x.length;
+		my /= y.length;
+
+		float r = 0;
+		for (int i = 0; i < x.length; i++) {
+			x[i] -= mx;
+			y[i] -= my;
+			r += x[i] * x[i] + y[i] * y[i];
+		}
+		r = (float) Math.sqrt(r / x.length);
+		if (r == 0)
+			return 0;
+		for (int i = 0; i < x.length; i++) {
+			x[i] /= r;
+			y[i] /= r;
+		}
+		return r;
+	}
+
+	/*ACCESSORS*/
+
+	public String getName() {
+		return name;
+	}
+
+	public String getAction() {
+		return action;
+	}
+
+	/**
+	 * Returns the length of the motion in microseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public float getThreshold() {
+		return threshold;
+	}
+
+	public int getBand() {
+		return band;
+	}
+
+	float[] getX() {
+		return x;
+	}
+
+	float[] getY() {
+		return y;
+	}
+
+	float[] getLowerX() {
+		return lowerX;
+	}
+
+	float[] getUpperX() {
+		return upperX;
+	}
+
+	float[] getLowerY() {
+		return lowerY;
+	}
+
+	float[] getUpperY() {
+		return upperY;
+	}
+}
@@ -7,8 +7,11 @@ package backend.speech;
  */
 
 import java.io.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import frontend.audiovisualizer.VisualizerPanel;
+import hub.BackgroundTasks;
 import org.jaudiotagger.audio.*;
 import org.jaudiotagger.audio.exceptions.*;
 import org.jaudiotagger.tag.*;
@@ -16,6 +19,15 @@ import org.jaudiotagger.tag.*;
 public class SongDirectory {
   private String path;
 
+  /*How long a found song's title stays on the visualizer (ms) and the pending clearing*/
+  private static final long OVERLAY_TIME = 3000;
+  private static final Runnable CLEAR_OVERLAY = new Runnable() {
+    public void run() {
+      VisualizerPanel.overlayText = "";
+    }
+  };
+  private static ScheduledFuture<?> clearOverlay;
+
   /**
    * SongDirectory
    * @param path
@@ -38,16 +50,11 @@ public class SongDirectory {
     else
       toSet = toReturn.getTag().getFirst(FieldKey.TITLE);
 
-    (new Thread() {
-      public void run() {
-        VisualizerPanel.overlayText = toSet;
-        try {
-          Thread.sleep(3000);
-        } catch (Exception e) {}
-
-        VisualizerPanel.overlayText = "";
-      }
-    }).start();
+    // show the result for a while; a newer result cancels the older one's clearing
+    VisualizerPanel.overlayText = toSet;
+    synchronized (SongDirectory.class) {
+      clearOverlay = BackgroundTasks.reschedule(clearOverlay, CLEAR_OVERLAY, OVERLAY_TIME, TimeUnit.MILLISECONDS);
+    }
 
     return toReturn;
   }
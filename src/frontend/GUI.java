@@ -157,6 +157,9 @@ public class GUI extends JFrame {
 	private class LeapConductorWindowAdapter extends WindowAdapter {
 	    @Override
 	    public void windowClosing(WindowEvent e) {
+	    	// closes a frame recording too, so its buffered end is written before the program exits
+	    	_visualizerPanel.getDevices().shutdown();
+
 	    	String[] filepaths = SongList.getAllSongs();
 			try {
 				String dir = System.getProperty("user.dir");
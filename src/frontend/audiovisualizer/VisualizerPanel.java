@@ -6,6 +6,7 @@ package frontend.audiovisualizer;
  * @auther Arun Varma
  */
 
+import hub.GestureLatency;
 import hub.SoundController;
 
 import java.awt.Color;
@@ -21,17 +22,17 @@ import javafx.scene.media.AudioSpectrumListener;
 
 import javax.swing.JPanel;
 
-import com.leapmotion.leap.Controller;
-
 import frontend.GUI;
+import frontend.soundpanel.LeapDeviceManager;
 import frontend.soundpanel.LeapListener;
+import frontend.soundpanel.ScreenLocations;
 import frontend.soundpanel.SongPanel;
 
 @SuppressWarnings("serial")
 public class VisualizerPanel extends JPanel {
   private LeapListener leapListener;
   private AudioSpectrumListener audioSpectrumListener;
-  private Controller leapController;
+  private LeapDeviceManager devices;
   private List<Color> colors;
   private ParticleField particleField;
   private int trailSize;
@@ -41,16 +42,22 @@ public class VisualizerPanel extends JPanel {
   public static String overlayText = "";
   public static String overlayText2 = "";
 
+  // -Dleapconductor.latency=true shows the gesture control latencies (see GestureLatency), refreshed twice a second
+  private final boolean latencyOverlay = Boolean.getBoolean("leapconductor.latency");
+  private Font latencyFont;
+  private String latencyText = "";
+  private String latencyText2 = "";
+  private long latencyUpdated = 0;
+
   /**
    * VisualizerPanel
    */
   public VisualizerPanel(int particles, int trailSize, SongPanel sp) {
     setBackground(Color.DARK_GRAY);
 
-    // set up controller and listener
-    leapController = new Controller();
-    leapListener = new LeapListener();
-    leapController.addListener(leapListener);
+    // set up controllers and listeners, one pipeline per device
+    devices = LeapDeviceManager.fromProperties();
+    leapListener = devices.getPrimary();
 
     sp.setLeap(leapListener);
 
@@ -60,6 +67,7 @@ public class VisualizerPanel extends JPanel {
     particleField = new ParticleField(particles, trailSize, GUI.WIDTH, GUI.HEIGHT - 120);
 
     font = new Font("SansSerif", Font.BOLD, 24);
+    latencyFont = new Font("Monospaced", Font.PLAIN, 12);
 
     sizeChange = true;
 
@@ -72,6 +80,14 @@ public class VisualizerPanel extends JPanel {
     };
   }
 
+  /**
+   * getDevices
+   * @return the gesture pipelines of the leap devices
+   */
+  public LeapDeviceManager getDevices() {
+    return devices;
+  }
+
   /**
    * paintComponent
    * @param g
@@ -95,7 +111,7 @@ public class VisualizerPanel extends JPanel {
     double centerRadius = circle.getRadius();
     if (SoundController.isMute())
       circle.setRadius(Math.min(centerRadius + 40, 700));
-    else if (SoundController.getMediaPlayer().getCurrentRate() == 0)
+    else if (!SoundController.isPlaying())
       circle.setRadius(Math.max(centerRadius - 10, 0));
     else if (sizeChange) {
       if (newRadius > centerRadius)
@@ -120,45 +136,39 @@ public class VisualizerPanel extends JPanel {
     // paint hands
     ParticleCircle leftCircle = particleField.getLeftCircle();
     ParticleCircle rightCircle = particleField.getRightCircle();
-    List<Point2D> hands = leapListener.getHandLocs();
-    if (hands != null) {
-      if (hands.size() == 1) {
-        Point2D pt = hands.get(0);
-
-        double x = pt.getX() * getWidth();
-        double y = pt.getY() * getHeight();
-        if (x > 0 && y > 0 && x < getWidth() && y < getHeight()) {
-          leftCircle.setPos(x, y);
-          g2.setColor(new Color(0.5f, 0.75f, 0.8f, 0.4f));
-          double radius = leftCircle.getRadius();
-          Ellipse2D ellipse = new Ellipse2D.Double(x - radius, y - radius, radius * 2, radius * 2);
-          g2.fill(ellipse);
-        }
-        particleField.getRightCircle().setPos(-100, -100);
+    ScreenLocations locations = leapListener.getScreenLocations();
+    int handCount = locations.getHandCount();
+    if (handCount == 1) {
+      double x = locations.getHandX(0) * getWidth();
+      double y = locations.getHandY(0) * getHeight();
+      if (x > 0 && y > 0 && x < getWidth() && y < getHeight()) {
+        leftCircle.setPos(x, y);
+        g2.setColor(new Color(0.5f, 0.75f, 0.8f, 0.4f));
+        double radius = leftCircle.getRadius();
+        Ellipse2D ellipse = new Ellipse2D.Double(x - radius, y - radius, radius * 2, radius * 2);
+        g2.fill(ellipse);
+      }
+      particleField.getRightCircle().setPos(-100, -100);
+    }
+    else if (handCount == 2) {
+      double x = locations.getHandX(0) * getWidth();
+      double y = locations.getHandY(0) * getHeight();
+      if (x > 0 && y > 0 && x < getWidth() && y < getHeight()) {
+        leftCircle.setPos(x, y);
+        g2.setColor(new Color(0.5f, 0.75f, 0.8f, 0.4f));
+        double radius = leftCircle.getRadius();
+        Ellipse2D ellipse = new Ellipse2D.Double(x - radius, y - radius, radius * 2, radius * 2);
+        g2.fill(ellipse);
       }
-      else if (hands.size() == 2) {
-        Point2D pt1 = hands.get(0);
-        Point2D pt2 = hands.get(1);
-
-        double x = pt1.getX() * getWidth();
-        double y = pt1.getY() * getHeight();
-        if (x > 0 && y > 0 && x < getWidth() && y < getHeight()) {
-          leftCircle.setPos(x, y);
-          g2.setColor(new Color(0.5f, 0.75f, 0.8f, 0.4f));
-          double radius = leftCircle.getRadius();
-          Ellipse2D ellipse = new Ellipse2D.Double(x - radius, y - radius, radius * 2, radius * 2);
-          g2.fill(ellipse);
-        }
 
-        x = pt2.getX() * getWidth();
-        y = pt2.getY() * getHeight();
-        if (x > 0 && y > 0 && x < getWidth() && y < getHeight()) {
-          rightCircle.setPos(x, y);
-          g2.setColor(new Color(0.5f, 0.75f, 0.8f, 0.4f));
-          double radius = rightCircle.getRadius();
-          Ellipse2D ellipse = new Ellipse2D.Double(x - radius, y - radius, radius * 2, radius * 2);
-          g2.fill(ellipse);
-        }
+      x = locations.getHandX(1) * getWidth();
+      y = locations.getHandY(1) * getHeight();
+      if (x > 0 && y > 0 && x < getWidth() && y < getHeight()) {
+        rightCircle.setPos(x, y);
+        g2.setColor(new Color(0.5f, 0.75f, 0.8f, 0.4f));
+        double radius = rightCircle.getRadius();
+        Ellipse2D ellipse = new Ellipse2D.Double(x - radius, y - radius, radius * 2, radius * 2);
+        g2.fill(ellipse);
       }
     }
     else {
@@ -167,17 +177,14 @@ public class VisualizerPanel extends JPanel {
     }
 
     // paint fingers
-    List<Point2D> fingers = leapListener.getFingerLocs();
-    if (fingers != null) {
-      for (Point2D finger : fingers) {
-        double x = finger.getX() * getWidth();
-        double y = finger.getY() * getHeight();
-
-        if (x > 0 && y > 0 && x < getWidth() && y < getHeight()) {
-          g2.setColor(new Color(76, 81, 109));
-          Ellipse2D ellipse = new Ellipse2D.Double(x, y, 30, 30);
-          g2.fill(ellipse);
-        }
+    for (int i = 0; i < locations.getFingerCount(); i++) {
+      double x = locations.getFingerX(i) * getWidth();
+      double y = locations.getFingerY(i) * getHeight();
+
+      if (x > 0 && y > 0 && x < getWidth() && y < getHeight()) {
+        g2.setColor(new Color(76, 81, 109));
+        Ellipse2D ellipse = new Ellipse2D.Double(x, y, 30, 30);
+        g2.fill(ellipse);
       }
     }
 
@@ -214,6 +221,28 @@ public class VisualizerPanel extends JPanel {
     g2.drawString(overlayText, xpos, 50);
     int xpos2 = GUI.WIDTH / 2 - g2.getFontMetrics(g2.getFont()).stringWidth(overlayText2) / 2;
     g2.drawString(overlayText2, xpos2, 100);
+    if (latencyOverlay)
+      paintLatency(g2);
     repaint();
   }
+
+  /**
+   * paintLatency
+   * draws the control latency percentiles in the bottom left corner
+   */
+  private void paintLatency(Graphics2D g2) {
+    long now = System.currentTimeMillis();
+    if (now - latencyUpdated > 500) {
+      latencyUpdated = now;
+      latencyText = String.format("control latency  p50 %.1f ms  p99 %.1f ms  max %.1f ms  (%d events)",
+          GestureLatency.TOTAL.getValueAtPercentile(50) / 1e6, GestureLatency.TOTAL.getValueAtPercentile(99) / 1e6,
+          GestureLatency.TOTAL.getMax() / 1e6, GestureLatency.TOTAL.getCount());
+      latencyText2 = String.format("p99  classify %.2f ms  queue %.2f ms  apply %.2f ms",
+          GestureLatency.CLASSIFY.getValueAtPercentile(99) / 1e6, GestureLatency.QUEUE.getValueAtPercentile(99) / 1e6,
+          GestureLatency.APPLY.getValueAtPercentile(99) / 1e6);
+    }
+    g2.setFont(latencyFont);
+    g2.drawString(latencyText, 10, getHeight() - 30);
+    g2.drawString(latencyText2, 10, getHeight() - 12);
+  }
 }
@@ -0,0 +1,168 @@
+package frontend.soundpanel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import backend.motion.Detectable;
+import backend.motion.FrameSnapshot;
+import backend.motion.GestureRuleSet;
+
+/**
+ * GestureRegistry
+ * named gestures ResponseReceivers can wait for (e.g. the tutorial waiting for a fist). Every gesture rule is a
+ * named gesture of its own; more can be defined as a combination of rules or as a condition on the snapshot.
+ * The registry is updated once per frame with the rules the frame already matched, so waiting for a gesture
+ * costs no extra detector evaluations; a receiver is answered once, after its gesture has been held long enough.
+ * Holds are measured with the leap frame timestamps, so they last as long at 30 fps as at 200 fps
+ */
+public class GestureRegistry {
+
+	/*Longest gap (microseconds) between two frames with the gesture that still counts as holding it,
+	  so a frame or two of lost tracking does not restart the hold*/
+	public static final long MAX_GAP = 150000;
+
+	/**
+	 * A receiver waiting for a gesture
+	 */
+	private static class Subscription {
+		private final String name;
+		private final long mask;
+		private final Detectable condition;
+		private final long hold;
+		private final ResponseReceiver receiver;
+		private long held = 0;
+		private long lastSeen = -1;
+
+		private Subscription(String name, long mask, Detectable condition, long hold, ResponseReceiver receiver) {
+			this.name = name;
+			this.mask = mask;
+			this.condition = condition;
+			this.hold = hold;
+			this.receiver = receiver;
+		}
+
+		private boolean isSeen(FrameSnapshot snapshot, long matches) {
+			return (matches & mask) != 0 || (condition != null && condition.isDetected(snapshot));
+		}
+
+		/**
+		 * Adds the time since the gesture was last seen to the hold, or starts over after a long gap
+		 * (or if the clock went backwards)
+		 * @return true once the gesture has been held long enough
+		 */
+		private boolean seenAt(long timestamp) {
+			long gap = timestamp - lastSeen;
+			if (lastSeen >= 0 && gap >= 0 && gap <= MAX_GAP)
+				held += gap;
+			else
+				held = 0;
+			lastSeen = timestamp;
+			return held >= hold;
+		}
+	}
+
+	private final GestureRuleSet rules;
+
+	/*Defined gestures: rules they match on and/or a condition*/
+	private final Map<String, Long> masks = new HashMap<String, Long>();
+	private final Map<String, Detectable> conditions = new HashMap<String, Detectable>();
+
+	private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+	/**
+	 * Constructor - defines one gesture per rule, named like the rule
+	 * @param rules the rules whose matches update is called with
+	 */
+	public GestureRegistry(GestureRuleSet rules) {
+		this.rules = rules;
+		for (int i = 0; i < rules.size(); i++)
+			masks.put(rules.getName(i), 1L << i);
+	}
+
+	/**
+	 * define
+	 * defines a gesture that is seen whenever any of the given rules matches
+	 * @param name
+	 * @param ruleNames
+	 */
+	public synchronized void define(String name, String... ruleNames) {
+		long mask = 0L;
+		for (String ruleName : ruleNames) {
+			int index = rules.indexOf(ruleName);
+			if (index < 0)
+				System.out.println("ERROR: gesture " + name + " uses unknown rule " + ruleName);
+			else
+				mask |= 1L << index;
+		}
+		masks.put(name, mask);
+		conditions.remove(name);
+	}
+
+	/**
+	 * define
+	 * defines a gesture that is seen whenever the condition holds; the condition should only read the snapshot
+	 * @param name
+	 * @param condition
+	 */
+	public synchronized void define(String name, Detectable condition) {
+		conditions.put(name, condition);
+		masks.remove(name);
+	}
+
+	/**
+	 * subscribe
+	 * answers the receiver once the gesture has been held for the hold time; replaces anyone already
+	 * waiting for the same gesture
+	 * @param name gesture
+	 * @param hold microseconds the gesture has to be held before the receiver is answered (0 = right away)
+	 * @param receiver
+	 * @return false if there is no such gesture
+	 */
+	public synchronized boolean subscribe(String name, long hold, ResponseReceiver receiver) {
+		Long mask = masks.get(name);
+		Detectable condition = conditions.get(name);
+		if (mask == null && condition == null) {
+			System.out.println("ERROR: no gesture named " + name);
+			return false;
+		}
+		unsubscribe(name);
+		subscriptions.add(new Subscription(name, mask == null ? 0L : mask, condition, hold, receiver));
+		return true;
+	}
+
+	/**
+	 * unsubscribe
+	 * stops waiting for the gesture
+	 * @param name
+	 */
+	public synchronized void unsubscribe(String name) {
+		for (Subscription subscription : subscriptions)
+			if (subscription.name.equals(name))
+				subscriptions.remove(subscription);
+	}
+
+	/**
+	 * update
+	 * called once per frame with the frame's classification
+	 * @param snapshot
+	 * @param matches rules the frame matched (see GestureRuleSet)
+	 */
+	public void update(FrameSnapshot snapshot, long matches) {
+		if (subscriptions.isEmpty())
+			return;
+		for (Subscription subscription : subscriptions) {
+			if (subscription.isSeen(snapshot, matches) && subscription.seenAt(snapshot.getTimestamp())) {
+				subscriptions.remove(subscription);
+				subscription.receiver.receiveResponse();
+			}
+		}
+	}
+
+	/**
+	 * Returns true if any receiver is waiting for a gesture
+	 */
+	public boolean hasSubscriptions() {
+		return !subscriptions.isEmpty();
+	}
+}
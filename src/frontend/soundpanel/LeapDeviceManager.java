@@ -0,0 +1,144 @@
+package frontend.soundpanel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import backend.motion.FrameRecorder;
+import backend.motion.FrameReplay;
+import backend.motion.SyntheticFrameSource;
+import hub.GestureEventConsumer;
+
+import com.leapmotion.leap.Controller;
+
+/**
+ * LeapDeviceManager
+ * runs one gesture pipeline per frame source: every leap Controller (or replayed recording, or synthetic source)
+ * gets its own LeapListener, with its own gesture states, holds and event queue, called on that source's own thread, so the
+ * sources are classified in parallel instead of one after the other. The GestureEventConsumer merges the queues
+ * into one stream ordered by frame arrival. The first pipeline is the primary one, which the visualizer draws and
+ * the tutorial listens to.
+ * Note: the bundled leap SDK has no device selection, every Controller connects to the local leap service and gets
+ * the same frames, so a second Controller would only publish every gesture twice; fromProperties connects one
+ */
+public class LeapDeviceManager {
+
+	private final List<LeapListener> listeners = new ArrayList<LeapListener>();
+	/*Each controller with the listener added to it*/
+	private final Map<Controller, LeapListener> controllers = new LinkedHashMap<Controller, LeapListener>();
+
+	/**
+	 * fromProperties
+	 * -Dleapconductor.replay=file plays a recording instead of the devices,
+	 * -Dleapconductor.devices=n asks for n controllers (only 1 is supported by the bundled leap SDK),
+	 * -Dleapconductor.record=file records the frames of the primary device,
+	 * -Dleapconductor.stress=fps adds a synthetic device generating conductor motion at that rate
+	 * @return manager with its pipelines running
+	 */
+	public static LeapDeviceManager fromProperties() {
+		LeapDeviceManager manager = new LeapDeviceManager();
+
+		String replay = System.getProperty("leapconductor.replay");
+		FrameReplay frameReplay = replay == null ? null : FrameReplay.load(new File(replay), 1);
+		if (frameReplay != null) {
+			manager.addReplay(frameReplay);
+			return manager;
+		}
+
+		int devices = Integer.getInteger("leapconductor.devices", 1);
+		if (devices != 1)
+			System.out.println("ERROR: the leap SDK cannot tell devices apart, connecting 1 controller instead of "
+					+ devices);
+		manager.addController(new Controller());
+
+		String record = System.getProperty("leapconductor.record");
+		if (record != null)
+			manager.getPrimary().setRecorder(FrameRecorder.open(new File(record)));
+
+		String stress = System.getProperty("leapconductor.stress");
+		if (stress != null) {
+			try {
+				SyntheticFrameSource source = new SyntheticFrameSource(System.nanoTime());
+				source.setNoise(1);
+				manager.addSynthetic(source, Double.parseDouble(stress));
+			} catch (NumberFormatException e) {
+				System.out.println("ERROR: leapconductor.stress must be a frame rate, not " + stress);
+			}
+		}
+		return manager;
+	}
+
+	/**
+	 * addController
+	 * starts a pipeline for the controller
+	 * @param controller
+	 * @return the pipeline's listener
+	 */
+	public synchronized LeapListener addController(Controller controller) {
+		LeapListener listener = new LeapListener();
+		controller.addListener(listener);
+		controllers.put(controller, listener);
+		listeners.add(listener);
+		return listener;
+	}
+
+	/**
+	 * addReplay
+	 * starts a pipeline fed by a recording on its own thread
+	 * @param replay
+	 * @return the pipeline's listener
+	 */
+	public synchronized LeapListener addReplay(FrameReplay replay) {
+		LeapListener listener = new LeapListener();
+		replay.start(listener);
+		listeners.add(listener);
+		return listener;
+	}
+
+	/**
+	 * addSynthetic
+	 * starts a pipeline fed by generated frames on its own thread
+	 * @param source
+	 * @param fps frames per second
+	 * @return the pipeline's listener
+	 */
+	public synchronized LeapListener addSynthetic(SyntheticFrameSource source, double fps) {
+		LeapListener listener = new LeapListener();
+		source.start(listener, fps);
+		listeners.add(listener);
+		return listener;
+	}
+
+	/**
+	 * shutdown
+	 * disconnects every controller and stops consuming their events
+	 */
+	public synchronized void shutdown() {
+		for (Map.Entry<Controller, LeapListener> entry : controllers.entrySet())
+			entry.getKey().removeListener(entry.getValue());
+		for (LeapListener listener : listeners) {
+			listener.setRecorder(null);
+			GestureEventConsumer.getInstance().removeQueue(listener.getEventQueue());
+		}
+		controllers.clear();
+		listeners.clear();
+	}
+
+	/**
+	 * getPrimary
+	 * @return listener of the first pipeline
+	 */
+	public synchronized LeapListener getPrimary() {
+		return listeners.get(0);
+	}
+
+	public synchronized List<LeapListener> getListeners() {
+		return new ArrayList<LeapListener>(listeners);
+	}
+
+	public synchronized List<Controller> getControllers() {
+		return new ArrayList<Controller>(controllers.keySet());
+	}
+}
@@ -8,38 +8,148 @@ package frontend.soundpanel;
 
 import backend.*;
 import backend.speech.*;
+import hub.BackgroundTasks;
+import hub.ControlAction;
+import hub.GestureEventConsumer;
+import hub.GestureEventQueue;
 import hub.SoundController;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.geom.Point2D;
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
 
-import javax.swing.Timer;
 import backend.motion.*;
 import com.leapmotion.leap.*;
 import org.jaudiotagger.audio.AudioFile;
 
-public class LeapListener extends Listener {
+import java.io.File;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LeapListener extends Listener implements SnapshotHandler {
     private SongsBySpeech speech;
-	private List<Point2D> handLocs;
-	private List<Point2D> fingerLocs;
-	private SyncBoolean cooldownComplete = new SyncBoolean(true);
+	/*Where hands and fingers point on the screen, handed to the visualizer*/
+	private final ScreenLocationBuffer screenLocations = new ScreenLocationBuffer();
 	private double width, height;
-	private ResponseReceiver fiveFingerRequest = null;
-	private int fiveFingerHeld = 0;
-	private ResponseReceiver fistRequest = null;
-	private int fistHeld = 0;
-	private ResponseReceiver playRequest = null;
-	private ResponseReceiver volumeRequest = null;
-	private int volumeHeld = 0;
-	private ResponseReceiver highRequest = null;
-	private int highHeld = 0;
-	private ResponseReceiver speedRequest = null;
-	private int speedHeld = 0;
-	private ResponseReceiver stopRequest = null;
-	private ResponseReceiver swipeRequest = null;
+
+	/*Gesture rules, the control each one triggers and the features they are evaluated against*/
+	private final GestureRuleSet rules = GestureRuleSet.load();
+	private final ControlAction[] controls = new ControlAction[rules.size()];
+	private long controlMask = 0L;
+	private final GestureFeatures features = new GestureFeatures();
+	private final GestureDispatcher dispatcher = new GestureDispatcher(rules);
+
+	/*Debouncing of the controlled rules and of swipes (times in microseconds): continuous controls have to be seen for
+	  a couple of frames and survive short dropouts, one-shot controls also get a cooldown so they do not re-trigger*/
+	private static final long ENTRY_TIME = 20000;
+	private static final long EXIT_TIME = 60000;
+	private static final long ONE_SHOT_COOLDOWN = 500000;
+	private static final long SWIPE_COOLDOWN = 1000000;
+	private final GestureStateMachine[] ruleStates = new GestureStateMachine[rules.size()];
+	private final GestureStateMachine swipeState = new GestureStateMachine(0, 0, SWIPE_COOLDOWN, false);
+
+	/*Gestures the tutorial (or anything else) can wait for and how long the tutorial wants them held (microseconds)*/
+	private final GestureRegistry registry = new GestureRegistry(rules);
+	private static final long FIVE_FINGER_HOLD = 2300000;
+	private static final long FIST_HOLD = 900000;
+	private static final long CONTROL_HOLD = 1400000;
+
+	/*Absolute control (-Dleapconductor.absolute=true): the palm height sets volume and bands, and the rules that
+	  step them are not published*/
+	private final PalmLevelMapper levels = new PalmLevelMapper();
+	private long levelMask = 0L;
+	private volatile boolean absoluteControl = Boolean.getBoolean("leapconductor.absolute");
+
+	/*Speech commands after a screen tap: how long the song is muted (ms), the pending unmute and whether a command
+	  is being recognized*/
+	private static final long SPEECH_MUTE_TIME = 4000;
+	private static final Runnable UNMUTE = new Runnable() {
+		@Override
+		public void run() {
+			GestureEventConsumer.getInstance().submit(new Runnable() {
+				@Override
+				public void run() {
+					ControlAction.UNMUTE.apply();
+				}
+			});
+		}
+	};
+	private ScheduledFuture<?> unmute;
+	private final AtomicBoolean recognizing = new AtomicBoolean();
+
+	/*Recorded motions spanning many frames and the control each one triggers*/
+	private final TrajectoryRecognizer trajectories = TrajectoryRecognizer.load();
+	private final ControlAction[] trajectoryControls = new ControlAction[trajectories.size()];
+
+	/*Recognized controls waiting to be applied by the GestureEventConsumer*/
+	private final GestureEventQueue events = new GestureEventQueue(256);
+
+	/*System.nanoTime when the frame being classified arrived (leap thread only)*/
+	private long frameReceived;
+
+	/*Records every live snapshot when set (see leapconductor.record)*/
+	private volatile FrameRecorder recorder;
+
+	/*Idle mode: once no hand has been seen for IDLE_AFTER microseconds, frames are only checked for a hand
+	  until one shows up again*/
+	private static final long IDLE_AFTER = 1000000;
+	private long lastHandSeen = 0;
+	private volatile boolean idle = false;
+	private long idleFrames = 0;
+
+	/**
+	 * Constructor - resolves the control of every gesture rule and trajectory, defines the tutorial gestures
+	 * and registers the event queue
+	 */
+	public LeapListener() {
+		GestureEventConsumer.getInstance().addQueue(events);
+		for (int i = 0; i < rules.size(); i++) {
+			controls[i] = ControlAction.forName(rules.getAction(i));
+			if (controls[i] != null) {
+				controlMask |= 1L << i;
+				if (PalmLevelMapper.replaces(controls[i]))
+					levelMask |= 1L << i;
+				boolean continuous = controls[i].isIncremental();
+				ruleStates[i] = new GestureStateMachine(ENTRY_TIME, EXIT_TIME, continuous ? 0 : ONE_SHOT_COOLDOWN, continuous);
+			}
+		}
+		defineTutorialGestures();
+		for (int i = 0; i < trajectories.size(); i++) {
+			String action = trajectories.getTemplate(i).getAction();
+			trajectoryControls[i] = action == null ? null : ControlAction.forName(action);
+		}
+	}
+
+	/**
+	 * Defines the gestures the tutorial waits for that are not a single rule; they only read the snapshot
+	 */
+	private void defineTutorialGestures() {
+		registry.define("FiveFingers", new Detectable() {
+			@Override
+			public boolean isDetected(FrameSnapshot snapshot) {
+				return snapshot.getHandCount() > 0 && snapshot.getLeftFingers() == 5;
+			}
+		});
+		registry.define("Fist", new Detectable() {
+			@Override
+			public boolean isDetected(FrameSnapshot snapshot) {
+				return snapshot.getHandCount() > 0 && snapshot.getLeftFingers() <= 1;
+			}
+		});
+		registry.define("Circle", new Detectable() {
+			@Override
+			public boolean isDetected(FrameSnapshot snapshot) {
+				return snapshot.getCircles() > 0;
+			}
+		});
+		registry.define("Swipe", new Detectable() {
+			@Override
+			public boolean isDetected(FrameSnapshot snapshot) {
+				return Math.abs(snapshot.getSwipeX()) > 0.5;
+			}
+		});
+		registry.define("Play", "HandsTogether");
+		registry.define("Stop", "HandsSeperate");
+		registry.define("Volume", "VUp", "VDown");
+		registry.define("High", "HandsUpRight", "HandsDownRight");
+	}
 
 	@Override
 	public void onConnect(Controller controller) {
@@ -60,6 +170,7 @@ public class LeapListener extends Listener {
 		InteractionBox box = controller.frame().interactionBox();
 		width = box.width();
 		height = box.height();
+		levels.setBox(box.center().getY(), box.height());
 
 	}
 
@@ -70,334 +181,245 @@ public class LeapListener extends Listener {
 	 */
 	@Override
 	public void onFrame(Controller controller) {
+		long received = System.nanoTime();
 		Frame frame = controller.frame();
+		boolean handsPresent = !frame.hands().isEmpty();
+		if (handsPresent) {
+			lastHandSeen = frame.timestamp();
+			idle = false;
+		}
+		else if (idle) {
+			idleFrames++;
+			return;
+		}
+		else if (frame.timestamp() - lastHandSeen >= IDLE_AFTER) {
+			// gestures, holds and cooldowns have long settled, nothing left to do until a hand appears
+			idle = true;
+			screenLocations.beginWrite();
+			screenLocations.publish();
+			return;
+		}
 
-		/***********************
-		 * RECOGNIZING GESTURES
-		 **********************/
+		FrameSnapshot snapshot = FrameSnapshot.capture(frame, controller.frame(1));
 
-		boolean realGestureRecognized = false;
+		FrameRecorder rec = recorder;
+		if (rec != null)
+			rec.record(snapshot);
 
-		for(Gesture g : controller.frame().gestures()) {
-			if(g.type() == Gesture.Type.TYPE_CIRCLE) {
+		classify(snapshot, received);
 
-				HandList h = controller.frame().hands();
-				// make sure there are hands
-				if (!h.isEmpty()){
-					// make sure there's only one hand
-					if (h.count() == 1){
-						// make sure there's only one finger
-						if (h.rightmost().fingers().count() == 1){
+		/****************
+		 * DRAWING HANDS
+		 ***************/
 
-							realGestureRecognized = true;
-							CircleGesture circle = new CircleGesture(g);
+		ScreenLocations locations = screenLocations.beginWrite();
+		if (handsPresent) {
+			Screen screen = controller.locatedScreens().get(0);
 
+			if (screen != null && screen.isValid()) {
+				HandList hands = frame.hands();
+				for (int i = 0; i < hands.count() && i < ScreenLocations.MAX_HANDS; i++) {
+					Hand hand = hands.get(i);
+					if (hand.isValid()) {
+						Vector intersect = screen.intersect(hand.palmPosition(), hand.direction(), true);
+						locations.addHand(intersect.getX(), 1f - intersect.getY());
+					}
+				}
 
-							if (circle.pointable().direction().angleTo(circle.normal()) <= Math.PI/2) {
-								//clockwise circle
-								SoundController.speedUpSong();
-							}
-							else {
-								//counterclockwise circle
-								SoundController.slowDownSong();
-							}
-						}
+				FingerList fingers = frame.fingers();
+				for (int i = 0; i < fingers.count() && i < ScreenLocations.MAX_FINGERS; i++) {
+					Finger finger = fingers.get(i);
+					if (finger.isValid()) {
+						Vector intersect = screen.intersect(finger.stabilizedTipPosition(), finger.direction(), true);
+						locations.addFinger(intersect.getX(), 1f - intersect.getY());
 					}
 				}
 			}
-			else if (g.type() == Gesture.Type.TYPE_SWIPE){
-				if (g.state() == Gesture.State.STATE_STOP){
-					SwipeGesture swipe = new SwipeGesture(g);
-					if (cooldownComplete.getValue()){
-
-						cooldownComplete.setValue(false);
-						if (swipe.direction().getX() > 0.5){
-							File nextSong = SongList.getNextSong();
-							if (nextSong != null){
-								SoundController.stopSong();
-								SoundController.setSong(nextSong);
-								SoundController.resetValues();
-								SoundController.playSong();
-							}
-						}
-						else if (swipe.direction().getX() < -0.5){
-							if (SoundController.getCurrentTime() > 3000){
-								SoundController.seekTo(0.0);
-							}
-							// Go to previous song
-							else{
-								File previousSong = SongList.getPreviousSong();
-								if (previousSong != null){
-								SoundController.stopSong();
-								SoundController.setSong(previousSong);
-								SoundController.resetValues();
-								SoundController.playSong();
-								}
-							}
+		}
+		screenLocations.publish();
+	}
 
-						}
+	/**
+	 * onSnapshot
+	 * recognizes gestures and answers response requests - everything that does not need the controller itself,
+	 * so recorded or generated frames go through exactly the same steps as live ones
+	 * @param snapshot
+	 */
+	@Override
+	public void onSnapshot(FrameSnapshot snapshot) {
+		classify(snapshot, System.nanoTime());
+	}
 
-						Timer t = new Timer(1000, new ActionListener() {
-							@Override
-							public void actionPerformed(ActionEvent e) {
-								cooldownComplete.setValue(true);
-							}
-						});
-						t.setRepeats(false);
-						t.start();
+	/**
+	 * classify
+	 * @param snapshot
+	 * @param received System.nanoTime when the frame arrived, the start of every published control's latency
+	 */
+	private void classify(FrameSnapshot snapshot, long received) {
+		frameReceived = received;
 
+		/***********************
+		 * RECOGNIZING GESTURES
+		 **********************/
 
-					}
-				}
-			}
+		boolean realGestureRecognized = false;
 
-            // screen tap for speech recognition
-			else if (g.type() == Gesture.Type.TYPE_SCREEN_TAP){
-				if (g.state() == Gesture.State.STATE_STOP){
-                    (new Thread() {
-                        public void run() {
-                            // mute for duration
-                            SoundController.mute();
-                            try {
-                                Thread.sleep(4000);
-                            } catch (Exception e) {}
-
-                            // unmute
-                            SoundController.unmute();
-		    		    }
-			        }).start();
-
-                    (new Thread() {
-                        public void run() {
-                            try {
-                                // attempt speech recognition
-                                AudioFile newSong = speech.speechCommand();
-                                if (newSong != null) {
-                                    SongList.addSong(newSong.getFile());
-                                    SongList.setCurrentSong(newSong.getFile());
-                                    SoundController.stopSong();
-                                    SoundController.setSong(newSong.getFile());
-                                    SoundController.playSong();
-                                }
-                            } catch (Exception e) {}
-                        }
-                    }).start();
-                }
-		    }
-        }
-
-		boolean normalGestureRecognized = true;
-
-		// gestures to pause/play the song
-		if (HandsSeperateGesture.isDetected(controller)){
-			SoundController.stopSong();
-		}
-		else if (HandsTogetherGesture.isDetected(controller)){
-			SoundController.playSong();
-		}
-		// gestures for volume control
-		else if (VUpGesture.isDetected(controller)){
-			SoundController.volumeUp();
-		}
-		else if (VDownGesture.isDetected(controller)){
-			SoundController.volumeDown();
-		}
-		// gestures for raising high/mid/bass
-		else if(HandsUpRightGesture.isDetected(controller)) {
-			SoundController.raiseHigh();
+		// circles with one finger of one hand change the speed
+		if (snapshot.getCircles() > 0 && snapshot.getHandCount() == 1 && snapshot.getRightFingers() == 1){
+			realGestureRecognized = true;
+			for (int i = 0; i < snapshot.getClockwiseCircles(); i++)
+				publish(ControlAction.SPEED_UP);
+			for (int i = 0; i < snapshot.getCounterClockwiseCircles(); i++)
+				publish(ControlAction.SLOW_DOWN);
 		}
-		else if (HandsUpMiddleGesture.isDetected(controller)){
-			SoundController.raiseMid();
-		}
-		else if(HandsUpLeftGesture.isDetected(controller)) {
-			SoundController.raiseBass();
+
+		// horizontal swipes change the song (at most one per cooldown)
+		float swipeX = snapshot.getSwipeX();
+		if (swipeState.update(Math.abs(swipeX) > 0.5, snapshot.getTimestamp())){
+			if (swipeX > 0.5){
+				publish(ControlAction.NEXT_SONG);
+			}
+			else {
+				// restart the song or go to previous song
+				publish(ControlAction.PREVIOUS_SONG);
+			}
 		}
-		// gestures for lowering high/mid/bass
-		else if (HandsDownRightGesture.isDetected(controller)){
-			SoundController.lowerHigh();
+
+		// screen tap for speech recognition: the song is muted while listening, another tap while a command is
+		// being recognized only extends the mute. The mute goes through the event queue like every other control,
+		// the unmute and the recognized song are submitted to the event consumer from the other threads
+		if (snapshot.getScreenTaps() > 0 && speech != null){
+			publish(ControlAction.MUTE);
+			unmute = BackgroundTasks.reschedule(unmute, UNMUTE, SPEECH_MUTE_TIME, TimeUnit.MILLISECONDS);
+
+			if (recognizing.compareAndSet(false, true)) {
+				BackgroundTasks.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							// attempt speech recognition
+							AudioFile newSong = speech.speechCommand();
+							if (newSong != null) {
+								final File file = newSong.getFile();
+								GestureEventConsumer.getInstance().submit(new Runnable() {
+									@Override
+									public void run() {
+										SongList.addSong(file);
+										SongList.setCurrentSong(file);
+										SoundController.stopSong();
+										SoundController.setSong(file);
+										SoundController.playSong();
+									}
+								});
+							}
+						} catch (Exception e) {
+						} finally {
+							recognizing.set(false);
+						}
+					}
+				});
+			}
 		}
-		else if (HandsDownMiddleGesture.isDetected(controller)){
-			SoundController.lowerMid();
+
+		// every detector below sees the filtered palms
+		features.update(snapshot);
+
+		// motions recorded as trajectory templates
+		int trajectory = trajectories.recognize(features);
+		if (trajectory >= 0) {
+			realGestureRecognized = true;
+			if (trajectoryControls[trajectory] != null)
+				publish(trajectoryControls[trajectory]);
 		}
-		else if (HandsDownLeftGesture.isDetected(controller)){
-			SoundController.lowerBass();
+
+		// only the rules that can match this hand count/finger count/palm region get checked;
+		// every controlled rule is debounced, and the first one that fires wins
+		long matches = dispatcher.dispatch(features);
+		boolean normalGestureRecognized = (matches & controlMask) != 0;
+		boolean absolute = absoluteControl;
+		int gesture = -1;
+		for (int i = 0; i < ruleStates.length; i++) {
+			if (ruleStates[i] != null && ruleStates[i].update(GestureRuleSet.isSet(matches, i), snapshot.getTimestamp())
+					&& gesture < 0 && !(absolute && GestureRuleSet.isSet(levelMask, i)))
+				gesture = i;
 		}
-		else {
-			normalGestureRecognized = false;
+		if (gesture >= 0)
+			publish(controls[gesture]);
+
+		// palm height as the level of volume/bands
+		if (absolute) {
+			ControlAction level = levels.update(features);
+			if (level != null)
+				publish(level, levels.getLevel());
+			realGestureRecognized |= levels.isEngaged();
 		}
+
 		if(!normalGestureRecognized && !realGestureRecognized) {
 			//if hand is flat, update the selection based on hand position
-			HandList hands = controller.frame().hands();
-			if (!hands.isEmpty()){
-				Hand rightHand = hands.rightmost();
-				int numFingers = rightHand.fingers().count();
+			if (snapshot.getHandCount() > 0){
+				int numFingers = snapshot.getRightFingers();
 				if(numFingers >= 3) {
-					float pos = rightHand.stabilizedPalmPosition().getX();
+					float pos = features.getRightX();
 					if(pos > 80) {
-						SoundController.updateSelection(SongPanel.getKnobPanel(KnobType.HIGH));
+						publish(ControlAction.SELECT_HIGH);
 					}
 					else if(pos < -80) {
-						SoundController.updateSelection(SongPanel.getKnobPanel(KnobType.LOW));
+						publish(ControlAction.SELECT_LOW);
 					}
 					else {
-						SoundController.updateSelection(SongPanel.getKnobPanel(KnobType.MID));
-					}
-				}
-			}
-		}
-
-		/****************
-		 * DRAWING HANDS
-		 ***************/
-
-		if (!frame.hands().isEmpty()) {
-			Screen screen = controller.locatedScreens().get(0);
-
-			if (screen != null && screen.isValid()) {
-				HandList hands = frame.hands();
-				ArrayList<Point2D> handList = new ArrayList<>();
-
-				for (int i = 0; i < hands.count() && i < 2; i++) {
-					if (hands.get(i).isValid()) {
-						Vector intersect = screen.intersect(hands.get(i).palmPosition(), hands.get(i).direction(), true);
-						handList.add(new Point2D.Double(intersect.getX(), 1d - intersect.getY()));
+						publish(ControlAction.SELECT_MID);
 					}
 				}
-
-				handLocs = handList;
 			}
 		}
-		else
-			handLocs = null;
-
-		if (!frame.fingers().isEmpty()) {
-			Screen screen = controller.locatedScreens().get(0);
-
-			if (screen != null && screen.isValid()) {
-				FingerList fingers = frame.fingers();
-				ArrayList<Point2D> fingerList = new ArrayList<>();
-
-				for (int i = 0; i < fingers.count() && i < 10; i++) {
-					if (fingers.get(i).isValid()) {
-						Vector intersect = screen.intersect(fingers.get(i).stabilizedTipPosition(), fingers.get(i).direction(), true);
-						fingerList.add(new Point2D.Double(intersect.getX(), 1d - intersect.getY()));
-					}
-				}
-
-				fingerLocs = fingerList;
-			}
-		}
-		else
-			fingerLocs = null;
-
 
 		/****************************
 		 * CHECKING RESPONSE REQUESTS
 		 ****************************/
 
-		HandList h = controller.frame().hands();
-
-		//listen for 5-finger
-		if(fiveFingerRequest != null) {
-			if(!h.isEmpty()) {
-				if(h.leftmost().fingers().count() == 5) {
-					fiveFingerHeld++;
-					if(fiveFingerHeld > 250) {
-						fiveFingerRequest.receiveResponse();
-						fiveFingerRequest = null;
-						fiveFingerHeld = 0;
-					}
-				}
-			}
-		}
+		registry.update(snapshot, matches);
+	}
 
-		//listen for fist
-		if(fistRequest != null) {
-			if(!h.isEmpty()) {
-				if(h.leftmost().fingers().count() <= 1) {
-					fistHeld++;
-					if(fistHeld > 100) {
-						fistRequest.receiveResponse();
-						fistRequest = null;
-						fistHeld = 0;
-					}
-				}
-			}
-		}
+	/**
+	 * Starts writing every live snapshot to the given recorder, or stops recording if it is null.
+	 * The previous recorder is closed
+	 * @param recorder
+	 */
+	public void setRecorder(FrameRecorder recorder) {
+		FrameRecorder old = this.recorder;
+		this.recorder = recorder;
+		if (old != null)
+			old.close();
+	}
 
-		//listen for play
-		if(playRequest != null) {
-			if(HandsTogetherGesture.isDetected(controller)) {
-				SongList.setCurrentSong(SongList.getCurrentlySelectedSong());
-				playRequest.receiveResponse();
-				playRequest = null;
-			}
-		}
+	/**
+	 * publish
+	 * hands a recognized control to the event consumer; the leap thread never applies it itself
+	 * @param action
+	 */
+	private void publish(ControlAction action) {
+		events.offer(action.ordinal(), frameReceived);
+	}
 
-		//listen for volume
-		if(volumeRequest != null) {
-			if(VDownGesture.isDetected(controller) || VUpGesture.isDetected(controller)) {
-				volumeHeld++;
-				if(volumeHeld > 150) {
-					volumeRequest.receiveResponse();
-					volumeRequest = null;
-					volumeHeld = 0;
-				}
-			}
-		}
+	/**
+	 * publish
+	 * @param action absolute control
+	 * @param level from 0 to 1
+	 */
+	private void publish(ControlAction action, float level) {
+		events.offer(action.ordinal(), level, frameReceived);
+	}
 
-		//listen for high
-		if(highRequest != null) {
-			if(HandsUpRightGesture.isDetected(controller) || HandsDownRightGesture.isDetected(controller)) {
-				highHeld++;
-				if(highHeld > 150) {
-					highRequest.receiveResponse();
-					highRequest = null;
-					highHeld = 0;
-				}
-			}
-		}
+	/**
+	 * setAbsoluteControl
+	 * @param absolute true to set volume and bands from the palm height, false to step them with palm movement
+	 */
+	public void setAbsoluteControl(boolean absolute) {
+		absoluteControl = absolute;
+	}
 
-		//listen for speed change
-		if(speedRequest != null) {
-			for(Gesture g : controller.frame().gestures()) {
-				if(g.type().equals(Gesture.Type.TYPE_CIRCLE)) {
-					speedHeld++;
-					if(speedHeld > 150) {
-						speedRequest.receiveResponse();
-						speedRequest = null;
-						speedHeld = 0;
-						
-					}
-				}
-			}
-		}
-/*
-		//listen for swipe
-		if(swipeRequest != null) {
-			for(Gesture g : controller.frame().gestures()) {
-				if(g.type().equals(Gesture.Type.TYPE_SWIPE)) {
-
-					SwipeGesture swipe = new SwipeGesture(g);
-					
-					if (g.state() == Gesture.State.STATE_STOP){
-						if (Math.abs( swipe.direction().getX() ) > 0.5 ){
-							swipeRequest.receiveResponse();
-							swipeRequest = null;
-						}
-					}
-					
-				}
-			}
-		}
-*/
-		//listen for stop
-		if(stopRequest != null) {
-			if(HandsSeperateGesture.isDetected(controller)) {
-				stopRequest.receiveResponse();
-				stopRequest = null;
-			}
-		}
+	public boolean isAbsoluteControl() {
+		return absoluteControl;
 	}
 
 	/**
@@ -405,50 +427,90 @@ public class LeapListener extends Listener {
 	 */
 
 	public void listenForFiveFingers(ResponseReceiver rr) {
-		this.fiveFingerRequest = rr;
+		registry.subscribe("FiveFingers", FIVE_FINGER_HOLD, rr);
 	}
 
 	public void listenForFist(ResponseReceiver rr) {
-		this.fistRequest = rr;
+		registry.subscribe("Fist", FIST_HOLD, rr);
 	}
 
-	public void listenForPlay(ResponseReceiver rr) {
-		this.playRequest = rr;
+	public void listenForPlay(final ResponseReceiver rr) {
+		registry.subscribe("Play", 0, new ResponseReceiver() {
+			@Override
+			public void receiveResponse() {
+				SongList.setCurrentSong(SongList.getCurrentlySelectedSong());
+				rr.receiveResponse();
+			}
+		});
 	}
 
 	public void listenForVolume(ResponseReceiver rr) {
-		this.volumeRequest = rr;
+		registry.subscribe("Volume", CONTROL_HOLD, rr);
 	}
 
 	public void listenForHigh(ResponseReceiver rr) {
-		this.highRequest = rr;
+		registry.subscribe("High", CONTROL_HOLD, rr);
 	}
 
 	public void listenForSpeed(ResponseReceiver rr) {
-		this.speedRequest = rr;
+		registry.subscribe("Circle", CONTROL_HOLD, rr);
 	}
 
 	public void listenForStop(ResponseReceiver rr) {
-		this.stopRequest = rr;
+		registry.subscribe("Stop", 0, rr);
 	}
+
 	public void listenForSwipe(ResponseReceiver rr) {
-		this.swipeRequest = rr;
+		registry.subscribe("Swipe", 0, rr);
+	}
+
+	/**
+	 * isIdle
+	 * @return true while no hand has been seen for a while and frames are skipped
+	 */
+	public boolean isIdle() {
+		return idle;
+	}
+
+	/**
+	 * getIdleFrames
+	 * @return number of frames skipped in idle mode
+	 */
+	public long getIdleFrames() {
+		return idleFrames;
+	}
+
+	/**
+	 * getRegistry
+	 * @return gestures receivers can wait for, to define more of them
+	 */
+	public GestureRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * getScreenLocations
+	 * to be called from one thread only (the Swing thread)
+	 * @return where the hands and fingers of the latest frame point on the screen
+	 */
+	public ScreenLocations getScreenLocations() {
+		return screenLocations.read();
 	}
 
 	/**
-	 * getHandLocs
-	 * @return handLocs
+	 * getEventQueue
+	 * @return queue the recognized controls are published to
 	 */
-	public List<Point2D> getHandLocs() {
-		return handLocs;
+	public GestureEventQueue getEventQueue() {
+		return events;
 	}
 
 	/**
-	 * getFingerLocs
-	 * @return fingerLocs
+	 * getDispatcher
+	 * @return dispatcher, whose counters show how many gesture rules get checked per frame
 	 */
-	public List<Point2D> getFingerLocs() {
-		return fingerLocs;
+	public GestureDispatcher getDispatcher() {
+		return dispatcher;
 	}
 
 	/**
@@ -0,0 +1,26 @@
+package frontend.soundpanel;
+
+import backend.motion.GestureBenchmark;
+
+/**
+ * ListenerBenchmark
+ * runs the GestureBenchmark cases and then the whole classification of LeapListener, including publishing the
+ * recognized controls, over the same frames
+ * usage: ListenerBenchmark [recording]
+ * (needs the leap native library on java.library.path, since LeapListener is a leap Listener)
+ */
+public class ListenerBenchmark {
+
+	/**
+	 * main
+	 * @param args optional recording to replay instead of synthetic frames
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		GestureBenchmark benchmark = GestureBenchmark.open(args.length > 0 ? args[0] : null);
+		if (benchmark == null)
+			return;
+		benchmark.runDetectors();
+		benchmark.run("LeapListener", new LeapListener());
+	}
+}
@@ -0,0 +1,143 @@
+package frontend.soundpanel;
+
+import backend.motion.GestureFeatures;
+import backend.motion.GestureStateMachine;
+import backend.motion.RateLimitedSmoother;
+import hub.ControlAction;
+
+/**
+ * PalmLevelMapper
+ * absolute control: the height of a held palm inside the leap's InteractionBox is the level of a control, instead of
+ * the palm nudging it up or down a step per frame. The hand shapes are the ones of the step gestures:
+ * two fingers in the middle for the volume, three or more for the band under the palm (left, middle, right).
+ * A control is only taken over once its hand shape has been held for ENGAGE_TIME, so a hand passing through does not
+ * yank a level; from then on the level follows the (filtered) palm through a RateLimitedSmoother and is only
+ * published when it changed by at least RESOLUTION
+ */
+public class PalmLevelMapper {
+
+	/*Used until the real InteractionBox is known (mm), about the leap's default*/
+	private static final float DEFAULT_BOX_CENTER_Y = 200;
+	private static final float DEFAULT_BOX_HEIGHT = 235;
+
+	/*How long the hand shape has to be held to take over a control and how long it may drop out (microseconds)*/
+	private static final long ENGAGE_TIME = 250000;
+	private static final long RELEASE_TIME = 100000;
+
+	/*Smoothing of the level (levels go from 0 to 1): full range in half a second, jumps of a quarter at once,
+	  published in steps of a percent (about the old volume step)*/
+	private static final float MAX_RATE = 2f;
+	private static final float SNAP_DISTANCE = 0.25f;
+	private static final float RESOLUTION = 0.01f;
+
+	/*Palm x (mm) beyond which the palm is over the high/low band, same as the gesture rules*/
+	private static final float SIDE_X = 80;
+
+	private float boxBottom = DEFAULT_BOX_CENTER_Y - DEFAULT_BOX_HEIGHT / 2;
+	private float boxHeight = DEFAULT_BOX_HEIGHT;
+
+	private final GestureStateMachine engage = new GestureStateMachine(ENGAGE_TIME, RELEASE_TIME, 0, true);
+	private final RateLimitedSmoother smoother = new RateLimitedSmoother(MAX_RATE, SNAP_DISTANCE, RESOLUTION);
+	private ControlAction candidate = null;
+	private ControlAction engaged = null;
+
+	/**
+	 * setBox
+	 * @param centerY height of the InteractionBox center above the leap (mm)
+	 * @param height of the InteractionBox (mm)
+	 */
+	public void setBox(float centerY, float height) {
+		if (height > 0) {
+			boxBottom = centerY - height / 2;
+			boxHeight = height;
+		}
+	}
+
+	/**
+	 * update
+	 * @param features of the current frame
+	 * @return the control whose level changed in this frame (see getLevel), null if none did
+	 */
+	public ControlAction update(GestureFeatures features) {
+		ControlAction shape = shape(features);
+		if (shape != null && shape != candidate) {
+			// another hand shape starts over, it has to be held on its own
+			engage.reset();
+			candidate = shape;
+		}
+
+		long timestamp = features.getTimestamp();
+		if (!engage.update(shape != null, timestamp)) {
+			if (!engage.isActive())
+				engaged = null;
+			return null;
+		}
+		if (engaged != candidate) {
+			engaged = candidate;
+			smoother.reset();
+		}
+
+		float level = (features.getRightY() - boxBottom) / boxHeight;
+		level = Math.max(0f, Math.min(1f, level));
+		return smoother.update(level, timestamp) ? engaged : null;
+	}
+
+	/**
+	 * Returns the control the hand shape of the frame would set, null if it is none of them
+	 */
+	private ControlAction shape(GestureFeatures features) {
+		if (!features.hasHands() || features.getHandCount() != 1)
+			return null;
+
+		int fingers = features.getRightFingers();
+		float x = features.getRightX();
+		if (fingers == 2)
+			return Math.abs(x) < SIDE_X ? ControlAction.SET_VOLUME : null;
+		if (fingers < 3)
+			return null;
+		if (x > SIDE_X)
+			return ControlAction.SET_HIGH;
+		if (x < -SIDE_X)
+			return ControlAction.SET_LOW;
+		return ControlAction.SET_MID;
+	}
+
+	/**
+	 * isEngaged
+	 * @return true while a control follows the palm
+	 */
+	public boolean isEngaged() {
+		return engaged != null;
+	}
+
+	/**
+	 * getLevel
+	 * @return level of the engaged control, from 0 to 1
+	 */
+	public float getLevel() {
+		return smoother.getValue();
+	}
+
+	/**
+	 * replaces
+	 * @param action
+	 * @return true if the action is a step of a control the mapper sets absolutely
+	 */
+	public static boolean replaces(ControlAction action) {
+		if (action == null)
+			return false;
+		switch (action) {
+		case VOLUME_UP:
+		case VOLUME_DOWN:
+		case RAISE_BASS:
+		case LOWER_BASS:
+		case RAISE_MID:
+		case LOWER_MID:
+		case RAISE_HIGH:
+		case LOWER_HIGH:
+			return true;
+		default:
+			return false;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package frontend.soundpanel;
+
+import backend.motion.FrameSnapshot;
+import backend.motion.SnapshotHandler;
+import backend.motion.SyntheticFrameSource;
+import hub.GestureEventConsumer;
+import hub.GestureLatency;
+
+/**
+ * PipelineStress
+ * finds the highest frame rate LeapListener + GestureEventConsumer + SoundController keep up with on this machine.
+ * Scripted conductor motion with tracking noise is fed at doubling frame rates; a rate is sustainable if less than
+ * 1% of the frames start late and no gesture event is dropped.
+ * Without a song loaded the player itself is not exercised; to include it, start the app with
+ * -Dleapconductor.stress=fps, which adds a synthetic device at that rate (see LeapDeviceManager)
+ * usage: PipelineStress [seconds per rate] [first rate] [last rate]
+ */
+public class PipelineStress {
+
+	/**
+	 * Times every snapshot the listener handles
+	 */
+	private static class TimedHandler implements SnapshotHandler {
+		private final SnapshotHandler handler;
+		private long frames = 0;
+		private long total = 0;
+		private long max = 0;
+
+		private TimedHandler(SnapshotHandler handler) {
+			this.handler = handler;
+		}
+
+		@Override
+		public void onSnapshot(FrameSnapshot snapshot) {
+			long start = System.nanoTime();
+			handler.onSnapshot(snapshot);
+			long time = System.nanoTime() - start;
+			frames++;
+			total += time;
+			max = Math.max(max, time);
+		}
+	}
+
+	public static void main(String[] args) {
+		double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3;
+		double first = args.length > 1 ? Double.parseDouble(args[1]) : 100;
+		double last = args.length > 2 ? Double.parseDouble(args[2]) : 25600;
+
+		System.out.println(String.format("%10s %8s %12s %12s %8s %14s", "fps", "late", "mean us", "max us",
+				"dropped", "p99 latency ms"));
+		double sustainable = 0;
+		for (double fps = first; fps <= last; fps *= 2) {
+			LeapListener listener = new LeapListener();
+			TimedHandler timed = new TimedHandler(listener);
+			SyntheticFrameSource source = new SyntheticFrameSource(17);
+			source.setNoise(1);
+			source.setDropout(0.001f);
+			GestureLatency.TOTAL.reset();
+
+			long frames = (long) (fps * seconds);
+			long late = source.run(timed, fps, frames);
+			long dropped = listener.getEventQueue().getDropped();
+			GestureEventConsumer.getInstance().removeQueue(listener.getEventQueue());
+
+			double latePercent = 100.0 * late / frames;
+			System.out.println(String.format("%10.0f %7.2f%% %12.1f %12.1f %8d %14.2f", fps, latePercent,
+					timed.total / 1000.0 / timed.frames, timed.max / 1000.0, dropped,
+					GestureLatency.TOTAL.getValueAtPercentile(99) / 1e6));
+			if (latePercent >= 1 || dropped > 0)
+				break;
+			sustainable = fps;
+		}
+		System.out.println(sustainable > 0 ? "sustainable up to " + (long) sustainable + " fps"
+				: "not sustainable at " + (long) first + " fps");
+		System.exit(0);
+	}
+}
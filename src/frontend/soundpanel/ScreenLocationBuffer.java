@@ -0,0 +1,49 @@
+package frontend.soundpanel;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ScreenLocationBuffer
+ * hands the screen locations of each frame from the leap thread to the Swing thread without locks or garbage.
+ * There are three ScreenLocations: the writer fills its own, then swaps it with the shared one; the reader swaps
+ * its own with the shared one whenever that holds a newer frame. Neither side ever touches the instance the other
+ * one is using, and the reader always gets the latest complete frame
+ */
+public final class ScreenLocationBuffer {
+
+	private final AtomicReference<ScreenLocations> shared = new AtomicReference<ScreenLocations>(new ScreenLocations());
+	private ScreenLocations writing = new ScreenLocations();
+	private ScreenLocations reading = new ScreenLocations();
+
+	/**
+	 * beginWrite
+	 * writer thread only
+	 * @return the cleared locations to fill for the current frame
+	 */
+	public ScreenLocations beginWrite() {
+		writing.clear();
+		return writing;
+	}
+
+	/**
+	 * publish
+	 * writer thread only - makes the locations filled since beginWrite the latest frame
+	 */
+	public void publish() {
+		writing.fresh = true;
+		writing = shared.getAndSet(writing);
+	}
+
+	/**
+	 * read
+	 * reader thread only - the returned locations stay unchanged until the next call
+	 * @return locations of the latest published frame
+	 */
+	public ScreenLocations read() {
+		if (shared.get().fresh) {
+			reading.fresh = false;
+			reading = shared.getAndSet(reading);
+		}
+		return reading;
+	}
+}
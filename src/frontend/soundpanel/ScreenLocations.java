@@ -0,0 +1,86 @@
+package frontend.soundpanel;
+
+/**
+ * ScreenLocations
+ * where the hands and fingers of one frame point on the screen, as fractions of the screen width/height
+ * (0,0 is the top left corner). Instances are reused; see ScreenLocationBuffer
+ */
+public final class ScreenLocations {
+
+	public static final int MAX_HANDS = 2;
+	public static final int MAX_FINGERS = 10;
+
+	/*x,y pairs*/
+	private final float[] hands = new float[MAX_HANDS * 2];
+	private final float[] fingers = new float[MAX_FINGERS * 2];
+	private int handCount = 0;
+	private int fingerCount = 0;
+
+	/*Set when filled by the leap thread and not yet picked up by the reader*/
+	boolean fresh = false;
+
+	/**
+	 * clear
+	 * removes every hand and finger
+	 */
+	public void clear() {
+		handCount = 0;
+		fingerCount = 0;
+	}
+
+	/**
+	 * addHand
+	 * @param x
+	 * @param y
+	 * @return false if there already are MAX_HANDS hands
+	 */
+	public boolean addHand(float x, float y) {
+		if (handCount == MAX_HANDS)
+			return false;
+		hands[handCount * 2] = x;
+		hands[handCount * 2 + 1] = y;
+		handCount++;
+		return true;
+	}
+
+	/**
+	 * addFinger
+	 * @param x
+	 * @param y
+	 * @return false if there already are MAX_FINGERS fingers
+	 */
+	public boolean addFinger(float x, float y) {
+		if (fingerCount == MAX_FINGERS)
+			return false;
+		fingers[fingerCount * 2] = x;
+		fingers[fingerCount * 2 + 1] = y;
+		fingerCount++;
+		return true;
+	}
+
+	/*ACCESSORS*/
+
+	public int getHandCount() {
+		return handCount;
+	}
+
+	public float getHandX(int i) {
+		return hands[i * 2];
+	}
+
+	public float getHandY(int i) {
+		return hands[i * 2 + 1];
+	}
+
+	public int getFingerCount() {
+		return fingerCount;
+	}
+
+	public float getFingerX(int i) {
+		return fingers[i * 2];
+	}
+
+	public float getFingerY(int i) {
+		return fingers[i * 2 + 1];
+	}
+}
@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.BorderFactory;
 import javax.swing.DefaultListModel;
@@ -180,16 +181,7 @@ public class SongList {
 			return _currentSong;
 		}
 
-        String toGet;
-        try {
-            toGet = AudioFileIO.read(_currentSong).getTag().getFirst(FieldKey.TITLE);
-            if (toGet.length() == 0)
-                toGet = _currentSong.getName();
-        } catch (Exception e) {
-            toGet = _currentSong.getName();
-        }
-
-		int currentIndex = listModel.indexOf(toGet);
+		int currentIndex = getCurrentIndex();
 		int nextIndex = (currentIndex + 1) % listModel.size();
 		list.setSelectedIndex(nextIndex);
 		list.ensureIndexIsVisible(nextIndex);
@@ -216,16 +208,7 @@ public class SongList {
 			return _currentSong;
 		}
 
-        String toGet;
-        try {
-            toGet = AudioFileIO.read(_currentSong).getTag().getFirst(FieldKey.TITLE);
-            if (toGet.length() == 0)
-                toGet = _currentSong.getName();
-        } catch (Exception e) {
-            toGet = _currentSong.getName();
-        }
-
-		int currentIndex = listModel.indexOf(toGet);
+		int currentIndex = getCurrentIndex();
 		int prevIndex = currentIndex - 1;
 		list.ensureIndexIsVisible(prevIndex);
 		
@@ -241,6 +224,53 @@ public class SongList {
 		return _currentSong;
 	}
 	
+	/**
+	 * Returns the songs getNextSong and getPreviousSong would return, without moving to them or selecting them,
+	 * leaving out the current song
+	 * @return
+	 */
+	public static List<File> getNeighbourSongs() {
+		List<File> songs = new ArrayList<File>();
+		int size = listModel.getSize();
+		if (size == 0) return songs;
+
+		int nextIndex = 0;
+		int prevIndex = size - 1;
+		if (_currentSong != null) {
+			int currentIndex = getCurrentIndex();
+			nextIndex = (currentIndex + 1) % size;
+			prevIndex = currentIndex - 1 < 0 ? size - 1 : currentIndex - 1;
+		}
+		File next = musicFiles.get(listModel.elementAt(nextIndex));
+		File previous = musicFiles.get(listModel.elementAt(prevIndex));
+		if (next != null && !next.equals(_currentSong))
+			songs.add(next);
+		if (previous != null && !previous.equals(_currentSong) && !previous.equals(next))
+			songs.add(previous);
+		return songs;
+	}
+
+	/**
+	 * Returns the index of the current song in the list, -1 if it is not in the list. Songs added to the list are
+	 * found by their file, only other songs have their tag read
+	 */
+	private static int getCurrentIndex() {
+		for (Map.Entry<String, File> entry : musicFiles.entrySet()) {
+			if (entry.getValue().equals(_currentSong) && listModel.contains(entry.getKey()))
+				return listModel.indexOf(entry.getKey());
+		}
+
+        String toGet;
+        try {
+            toGet = AudioFileIO.read(_currentSong).getTag().getFirst(FieldKey.TITLE);
+            if (toGet.length() == 0)
+                toGet = _currentSong.getName();
+        } catch (Exception e) {
+            toGet = _currentSong.getName();
+        }
+		return listModel.indexOf(toGet);
+	}
+
 	/**
 	 * Adds mouse listener to list that listens for double clicks
 	 */
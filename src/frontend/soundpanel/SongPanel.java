@@ -1,5 +1,6 @@
 package frontend.soundpanel;
 
+import hub.BackgroundTasks;
 import hub.SoundController;
 
 import java.awt.Color;
@@ -326,8 +327,8 @@ public class SongPanel extends JPanel implements ResponseReceiver {
 			//if the click is on the add button, bring up file chooser and add chosen songs
 			else if (isWithinRadius(x,y,(ADD_X + BTN_SIZE/2), (ADD_Y + BTN_SIZE/2), BTN_SIZE/2 )){
 
-				//do this in another thread so we don't lag up the visualizer
-				new Thread() {
+				//do this in the background so we don't lag up the visualizer
+				BackgroundTasks.execute(new Runnable() {
 
 					@Override
 					public void run() {
@@ -336,7 +337,7 @@ public class SongPanel extends JPanel implements ResponseReceiver {
 							SongList.addSong(file);	
 					}
 
-				}.start();			
+				});
 
 			}
 			//if the click is on the remove button, remove the currently selected song
@@ -0,0 +1,117 @@
+package hub;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BackgroundTasks
+ * the threads slow side effects run on, instead of a new Thread per tap or click.
+ * Blocking work (speech recognition, file dialogs...) runs on virtual threads when the JVM has them (Java 21+),
+ * otherwise on a small pool of daemon threads, so repeated requests queue up instead of piling up platform threads.
+ * Delayed actions (unmuting, clearing overlay text...) are scheduled on one daemon thread and can be cancelled,
+ * nothing sleeps while waiting for them; they should be quick, anything slow is handed to execute
+ */
+public class BackgroundTasks {
+
+	/*Threads of the fallback pool for blocking work*/
+	private static final int POOL_THREADS = 4;
+
+	private static final ExecutorService workers = createWorkers();
+	private static final ScheduledThreadPoolExecutor scheduler = createScheduler();
+
+	private BackgroundTasks() {
+	}
+
+	/**
+	 * Virtual thread per task if available, a bounded pool otherwise
+	 */
+	private static ExecutorService createWorkers() {
+		try {
+			// looked up by reflection so the code still builds and runs on older JVMs
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_THREADS, POOL_THREADS, 30, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), daemonThreads("Background Task"));
+			pool.allowCoreThreadTimeOut(true);
+			return pool;
+		}
+	}
+
+	private static ScheduledThreadPoolExecutor createScheduler() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, daemonThreads("Scheduled Task"));
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+
+	private static ThreadFactory daemonThreads(final String name) {
+		return new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + " " + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * execute
+	 * runs blocking work in the background; exceptions are printed instead of silently ending the thread
+	 * @param task
+	 */
+	public static void execute(final Runnable task) {
+		workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					System.out.println("ERROR: background task failed: " + e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * schedule
+	 * @param task quick action to run later
+	 * @param delay
+	 * @param unit
+	 * @return handle to cancel the action before it runs
+	 */
+	public static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+		return scheduler.schedule(task, delay, unit);
+	}
+
+	/**
+	 * reschedule
+	 * cancels a scheduled action (if it has not run yet) and schedules the task in its place
+	 * @param previous handle returned by an earlier schedule, may be null
+	 * @param task
+	 * @param delay
+	 * @param unit
+	 * @return handle of the new action
+	 */
+	public static ScheduledFuture<?> reschedule(ScheduledFuture<?> previous, Runnable task, long delay, TimeUnit unit) {
+		if (previous != null)
+			previous.cancel(false);
+		return schedule(task, delay, unit);
+	}
+
+	/**
+	 * usesVirtualThreads
+	 * @return true if blocking work runs on virtual threads
+	 */
+	public static boolean usesVirtualThreads() {
+		return !(workers instanceof ThreadPoolExecutor);
+	}
+}
@@ -0,0 +1,229 @@
+package hub;
+
+import frontend.soundpanel.KnobType;
+
+/**
+ * ControlAction
+ * the controls a gesture can trigger. Gesture rules refer to these by name (see src/data/gestures.txt)
+ */
+public enum ControlAction {
+
+	PLAY(false) {
+		@Override
+		public void apply() {
+			SoundController.playSong();
+		}
+	},
+	STOP(false) {
+		@Override
+		public void apply() {
+			SoundController.stopSong();
+		}
+	},
+	VOLUME_UP(true) {
+		@Override
+		public void apply() {
+			SoundController.volumeUp();
+		}
+	},
+	VOLUME_DOWN(true) {
+		@Override
+		public void apply() {
+			SoundController.volumeDown();
+		}
+	},
+	RAISE_BASS(true) {
+		@Override
+		public void apply() {
+			SoundController.raiseBass();
+		}
+	},
+	LOWER_BASS(true) {
+		@Override
+		public void apply() {
+			SoundController.lowerBass();
+		}
+	},
+	RAISE_MID(true) {
+		@Override
+		public void apply() {
+			SoundController.raiseMid();
+		}
+	},
+	LOWER_MID(true) {
+		@Override
+		public void apply() {
+			SoundController.lowerMid();
+		}
+	},
+	RAISE_HIGH(true) {
+		@Override
+		public void apply() {
+			SoundController.raiseHigh();
+		}
+	},
+	LOWER_HIGH(true) {
+		@Override
+		public void apply() {
+			SoundController.lowerHigh();
+		}
+	},
+	SPEED_UP(true) {
+		@Override
+		public void apply() {
+			SoundController.speedUpSong();
+		}
+	},
+	SLOW_DOWN(true) {
+		@Override
+		public void apply() {
+			SoundController.slowDownSong();
+		}
+	},
+	NEXT_SONG(false) {
+		@Override
+		public void apply() {
+			SoundController.playNextSong();
+		}
+	},
+	PREVIOUS_SONG(false) {
+		@Override
+		public void apply() {
+			SoundController.playPreviousSong();
+		}
+	},
+	MUTE(false) {
+		@Override
+		public void apply() {
+			SoundController.mute();
+		}
+	},
+	UNMUTE(false) {
+		@Override
+		public void apply() {
+			SoundController.unmute();
+		}
+	},
+	SELECT_LOW(false) {
+		@Override
+		public void apply() {
+			SoundController.updateSelection(KnobType.LOW);
+		}
+	},
+	SELECT_MID(false) {
+		@Override
+		public void apply() {
+			SoundController.updateSelection(KnobType.MID);
+		}
+	},
+	SELECT_HIGH(false) {
+		@Override
+		public void apply() {
+			SoundController.updateSelection(KnobType.HIGH);
+		}
+	},
+
+	/*Absolute controls: the value (0 to 1, e.g. the palm height) sets the level; without one they select the knob*/
+	SET_VOLUME(false, true) {
+		@Override
+		public void apply() {
+			SoundController.updateSelection(KnobType.VOLUME);
+		}
+
+		@Override
+		public void apply(double value) {
+			SoundController.setVolumeLevel(value);
+		}
+	},
+	SET_LOW(false, true) {
+		@Override
+		public void apply() {
+			SoundController.updateSelection(KnobType.LOW);
+		}
+
+		@Override
+		public void apply(double value) {
+			SoundController.setLowLevel(value);
+		}
+	},
+	SET_MID(false, true) {
+		@Override
+		public void apply() {
+			SoundController.updateSelection(KnobType.MID);
+		}
+
+		@Override
+		public void apply(double value) {
+			SoundController.setMidLevel(value);
+		}
+	},
+	SET_HIGH(false, true) {
+		@Override
+		public void apply() {
+			SoundController.updateSelection(KnobType.HIGH);
+		}
+
+		@Override
+		public void apply(double value) {
+			SoundController.setHighLevel(value);
+		}
+	};
+
+	/*True if every repetition of the action changes the song a little more (e.g. VOLUME_UP)*/
+	private final boolean incremental;
+
+	/*True if the action sets a value to a level it is given (e.g. SET_VOLUME)*/
+	private final boolean absolute;
+
+	private ControlAction(boolean incremental) {
+		this(incremental, false);
+	}
+
+	private ControlAction(boolean incremental, boolean absolute) {
+		this.incremental = incremental;
+		this.absolute = absolute;
+	}
+
+	/**
+	 * Performs the control on the current song
+	 */
+	public abstract void apply();
+
+	/**
+	 * Performs the control with a value; only absolute controls use it
+	 * @param value from 0 (lowest) to 1 (highest)
+	 */
+	public void apply(double value) {
+		apply();
+	}
+
+	/**
+	 * Returns true if repeating the action keeps changing the song, false if doing it once is enough
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Returns true if the action sets a value to the level passed to apply(double)
+	 */
+	public boolean isAbsolute() {
+		return absolute;
+	}
+
+	/**
+	 * forName
+	 * @param name
+	 * @return the action with the given name, null if name is null or not an action
+	 */
+	public static ControlAction forName(String name) {
+		if (name == null)
+			return null;
+		try {
+			return valueOf(name);
+		} catch (IllegalArgumentException e) {
+			System.out.println("ERROR: Unknown control action " + name);
+			return null;
+		}
+	}
+}
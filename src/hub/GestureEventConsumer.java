@@ -0,0 +1,252 @@
+package hub;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import javafx.application.Platform;
+
+/**
+ * GestureEventConsumer
+ * drains the gesture event queues of the leap listeners and applies the events, so the leap thread only
+ * classifies frames and never waits on the MediaPlayer or a Swing repaint.
+ * With several listeners (one per device, see LeapDeviceManager) the queues are merged into one stream ordered by
+ * the time each event's frame arrived.
+ * Events are collected until the previous batch has been applied on the JavaFX thread, and at most one batch is
+ * applied per display frame; repeated events in a batch are coalesced (one-shot actions such as PLAY run once,
+ * incremental ones such as VOLUME_UP add up their steps, absolute ones such as SET_VOLUME only keep their latest
+ * value) and actions run in the order they were last seen.
+ * The summed steps reach the player through SoundController.flushPendingChanges at the end of the batch.
+ * Other threads (speech commands, timers) hand their player changes to submit, they run after the batch's actions
+ * so nothing but the batch ever touches the player.
+ * Every event's latency is recorded in GestureLatency, up to TRACED_EVENTS events per batch
+ */
+public class GestureEventConsumer extends Thread implements GestureEventQueue.Handler {
+
+	/*Longest the consumer sleeps before checking the queues again*/
+	private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	/*Shortest time between two applied batches (one display frame)*/
+	private static final long BATCH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+	/*Events per batch whose apply/total latency is recorded*/
+	private static final int TRACED_EVENTS = 1024;
+
+	private static GestureEventConsumer instance;
+
+	private final CopyOnWriteArrayList<GestureEventQueue> queues = new CopyOnWriteArrayList<GestureEventQueue>();
+	private final ControlAction[] actions = ControlAction.values();
+
+	/*Events drained but not yet handed to the JavaFX thread (consumer thread only)*/
+	private final int[] pendingCounts = new int[actions.length];
+	private final float[] pendingValues = new float[actions.length];
+	private final long[] pendingOrder = new long[actions.length];
+	private boolean hasPending;
+	private long sequence;
+	private long drained;
+	private final long[] pendingFrames = new long[TRACED_EVENTS];
+	private final long[] pendingDrained = new long[TRACED_EVENTS];
+	private int pendingTraced;
+
+	/*Batch being applied on the JavaFX thread*/
+	private final int[] batchCounts = new int[actions.length];
+	private final float[] batchValues = new float[actions.length];
+	private final int[] batchActions = new int[actions.length];
+	private int batchSize;
+	private final long[] batchFrames = new long[TRACED_EVENTS];
+	private final long[] batchDrained = new long[TRACED_EVENTS];
+	private int batchTraced;
+	private final ArrayList<Runnable> batchTasks = new ArrayList<Runnable>();
+	private final AtomicBoolean batchInFlight = new AtomicBoolean();
+
+	/*Tasks submitted by other threads, moved into the next batch*/
+	private final ConcurrentLinkedQueue<Runnable> submitted = new ConcurrentLinkedQueue<Runnable>();
+	private long lastBatch = System.nanoTime() - BATCH_INTERVAL_NANOS;
+
+	private final Runnable applyBatch = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				for (int i = 0; i < batchSize; i++) {
+					ControlAction action = actions[batchActions[i]];
+					if (action.isAbsolute()) {
+						action.apply(batchValues[batchActions[i]]);
+						continue;
+					}
+					int times = action.isIncremental() ? batchCounts[batchActions[i]] : 1;
+					for (int n = 0; n < times; n++)
+						action.apply();
+				}
+				for (int i = 0; i < batchTasks.size(); i++)
+					batchTasks.get(i).run();
+				SoundController.flushPendingChanges();
+
+				long applied = System.nanoTime();
+				for (int i = 0; i < batchTraced; i++) {
+					GestureLatency.APPLY.record(applied - batchDrained[i]);
+					GestureLatency.TOTAL.record(applied - batchFrames[i]);
+				}
+			} finally {
+				batchTasks.clear();
+				batchInFlight.set(false);
+				LockSupport.unpark(GestureEventConsumer.this);
+			}
+		}
+	};
+
+	private GestureEventConsumer() {
+		super("Gesture Event Consumer");
+		setDaemon(true);
+		GestureLatency.register();
+	}
+
+	/**
+	 * getInstance
+	 * @return the consumer shared by all leap listeners (started on first use)
+	 */
+	public static synchronized GestureEventConsumer getInstance() {
+		if (instance == null) {
+			instance = new GestureEventConsumer();
+			instance.start();
+		}
+		return instance;
+	}
+
+	/**
+	 * addQueue
+	 * starts draining the given queue
+	 * @param queue
+	 */
+	public void addQueue(GestureEventQueue queue) {
+		queue.setConsumer(this);
+		queues.add(queue);
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * removeQueue
+	 * @param queue
+	 */
+	public void removeQueue(GestureEventQueue queue) {
+		queues.remove(queue);
+		queue.setConsumer(null);
+	}
+
+	/**
+	 * submit
+	 * runs the task with the next batch, on the same thread as the gestures' actions; for player changes that do
+	 * not come from a leap listener
+	 * @param task
+	 */
+	public void submit(Runnable task) {
+		submitted.add(task);
+		LockSupport.unpark(this);
+	}
+
+	@Override
+	public void run() {
+		while (!isInterrupted()) {
+			drained = System.nanoTime();
+			if (queues.size() > 1) {
+				merge();
+			}
+			else {
+				for (GestureEventQueue queue : queues)
+					queue.drain(this);
+			}
+			if (!submitted.isEmpty())
+				hasPending = true;
+
+			long wait = MAX_WAIT_NANOS;
+			if (hasPending) {
+				long sinceLast = System.nanoTime() - lastBatch;
+				if (sinceLast < BATCH_INTERVAL_NANOS) {
+					wait = Math.min(wait, BATCH_INTERVAL_NANOS - sinceLast);
+				}
+				else if (batchInFlight.compareAndSet(false, true)) {
+					lastBatch += sinceLast;
+					submitBatch();
+					continue;
+				}
+				// otherwise the batch in flight wakes us up when it is done
+			}
+			LockSupport.parkNanos(this, wait);
+		}
+	}
+
+	/**
+	 * Drains every queue, always taking the event whose frame arrived first
+	 */
+	private void merge() {
+		while (true) {
+			GestureEventQueue oldest = null;
+			long oldestFrame = Long.MAX_VALUE;
+			for (GestureEventQueue queue : queues) {
+				long frame = queue.peekFrameNanos();
+				if (frame < oldestFrame) {
+					oldestFrame = frame;
+					oldest = queue;
+				}
+			}
+			if (oldest == null)
+				return;
+			oldest.poll(this);
+		}
+	}
+
+	@Override
+	public void onEvent(int action, float value, long frameNanos, long publishedNanos) {
+		if (action < 0 || action >= actions.length)
+			return;
+		GestureLatency.CLASSIFY.record(publishedNanos - frameNanos);
+		GestureLatency.QUEUE.record(drained - publishedNanos);
+		if (pendingTraced < TRACED_EVENTS) {
+			pendingFrames[pendingTraced] = frameNanos;
+			pendingDrained[pendingTraced] = drained;
+			pendingTraced++;
+		}
+
+		pendingCounts[action]++;
+		pendingValues[action] = value;
+		pendingOrder[action] = ++sequence;
+		hasPending = true;
+	}
+
+	/**
+	 * Moves the pending events into the batch (ordered by when each action was last seen) and applies it
+	 */
+	private void submitBatch() {
+		batchSize = 0;
+		for (int a = 0; a < actions.length; a++) {
+			batchCounts[a] = pendingCounts[a];
+			batchValues[a] = pendingValues[a];
+			if (pendingCounts[a] == 0)
+				continue;
+
+			int i = batchSize++;
+			while (i > 0 && pendingOrder[batchActions[i - 1]] > pendingOrder[a]) {
+				batchActions[i] = batchActions[i - 1];
+				i--;
+			}
+			batchActions[i] = a;
+			pendingCounts[a] = 0;
+		}
+		hasPending = false;
+		for (Runnable task; (task = submitted.poll()) != null; )
+			batchTasks.add(task);
+		System.arraycopy(pendingFrames, 0, batchFrames, 0, pendingTraced);
+		System.arraycopy(pendingDrained, 0, batchDrained, 0, pendingTraced);
+		batchTraced = pendingTraced;
+		pendingTraced = 0;
+
+		try {
+			Platform.runLater(applyBatch);
+		} catch (IllegalStateException e) {
+			// JavaFX is not running (no song was ever loaded), nothing else touches the player
+			applyBatch.run();
+		}
+	}
+}
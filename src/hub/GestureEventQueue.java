@@ -0,0 +1,173 @@
+package hub;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * GestureEventQueue
+ * a bounded, lock-free single producer/single consumer ring buffer of gesture events. The leap listener thread
+ * offers events (a ControlAction ordinal, its value for absolute controls and when the frame arrived) and never blocks; if the consumer falls
+ * so far behind that the ring is full the event is dropped and counted instead.
+ * Each event is also stamped with the time it was offered, for GestureLatency
+ */
+public final class GestureEventQueue {
+
+	/**
+	 * Receives events drained from the queue
+	 */
+	public interface Handler {
+		/**
+		 * @param action ControlAction ordinal
+		 * @param value target of an absolute control (0 to 1), 0 for the others
+		 * @param frameNanos System.nanoTime when the frame the event was recognized in arrived
+		 * @param publishedNanos System.nanoTime when the event was offered
+		 */
+		public void onEvent(int action, float value, long frameNanos, long publishedNanos);
+	}
+
+	private final int mask;
+	private final int[] actions;
+	private final float[] values;
+	private final long[] frameTimes;
+	private final long[] publishTimes;
+
+	/*Next slot the consumer reads and next slot the producer writes*/
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	/*Producer side copy of head so it only reads the shared counter when the ring looks full*/
+	private long cachedHead;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	/*Thread woken up when an event is offered*/
+	private volatile Thread consumer;
+
+	/**
+	 * Constructor
+	 * @param capacity rounded up to a power of two
+	 */
+	public GestureEventQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		mask = size - 1;
+		actions = new int[size];
+		values = new float[size];
+		frameTimes = new long[size];
+		publishTimes = new long[size];
+	}
+
+	/**
+	 * offer
+	 * called by the producer thread only
+	 * @param action ControlAction ordinal
+	 * @param frameNanos System.nanoTime when the frame arrived
+	 * @return false if the queue was full and the event was dropped
+	 */
+	public boolean offer(int action, long frameNanos) {
+		return offer(action, 0f, frameNanos);
+	}
+
+	/**
+	 * offer
+	 * called by the producer thread only
+	 * @param action ControlAction ordinal
+	 * @param value target of an absolute control (0 to 1)
+	 * @param frameNanos System.nanoTime when the frame arrived
+	 * @return false if the queue was full and the event was dropped
+	 */
+	public boolean offer(int action, float value, long frameNanos) {
+		long t = tail.get();
+		if (t - cachedHead > mask) {
+			cachedHead = head.get();
+			if (t - cachedHead > mask) {
+				dropped.incrementAndGet();
+				return false;
+			}
+		}
+
+		int slot = (int) t & mask;
+		actions[slot] = action;
+		values[slot] = value;
+		frameTimes[slot] = frameNanos;
+		publishTimes[slot] = System.nanoTime();
+		tail.lazySet(t + 1);
+
+		Thread c = consumer;
+		if (c != null)
+			LockSupport.unpark(c);
+		return true;
+	}
+
+	/**
+	 * drain
+	 * called by the consumer thread only - hands every queued event to the handler
+	 * @param handler
+	 * @return number of events drained
+	 */
+	public int drain(Handler handler) {
+		long h = head.get();
+		long t = tail.get();
+		for (long i = h; i < t; i++) {
+			int slot = (int) i & mask;
+			handler.onEvent(actions[slot], values[slot], frameTimes[slot], publishTimes[slot]);
+		}
+		if (t != h)
+			head.lazySet(t);
+		return (int) (t - h);
+	}
+
+	/**
+	 * peekFrameNanos
+	 * called by the consumer thread only
+	 * @return frame time of the oldest queued event, Long.MAX_VALUE if the queue is empty
+	 */
+	public long peekFrameNanos() {
+		long h = head.get();
+		if (h == tail.get())
+			return Long.MAX_VALUE;
+		return frameTimes[(int) h & mask];
+	}
+
+	/**
+	 * poll
+	 * called by the consumer thread only - hands the oldest queued event to the handler
+	 * @param handler
+	 * @return false if the queue was empty
+	 */
+	public boolean poll(Handler handler) {
+		long h = head.get();
+		if (h == tail.get())
+			return false;
+		int slot = (int) h & mask;
+		handler.onEvent(actions[slot], values[slot], frameTimes[slot], publishTimes[slot]);
+		head.lazySet(h + 1);
+		return true;
+	}
+
+	/**
+	 * Sets the thread that gets woken up whenever an event is offered
+	 * @param consumer
+	 */
+	public void setConsumer(Thread consumer) {
+		this.consumer = consumer;
+	}
+
+	public boolean isEmpty() {
+		return head.get() == tail.get();
+	}
+
+	public int size() {
+		return (int) (tail.get() - head.get());
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Returns how many events were dropped because the queue was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+}
@@ -0,0 +1,105 @@
+package hub;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * GestureLatency
+ * how long recognized controls take from the leap frame to the player, split into stages:
+ * classify (frame arrived -> control published by the leap thread), queue (published -> drained by the
+ * GestureEventConsumer), apply (drained -> applied to the player on the JavaFX thread, including batching)
+ * and total (frame arrived -> applied). Times are System.nanoTime, since the leap timestamps use the device's clock.
+ * The histograms are available over JMX as leapconductor:type=GestureLatency
+ */
+public class GestureLatency implements GestureLatencyMBean {
+
+	public static final String OBJECT_NAME = "leapconductor:type=GestureLatency";
+
+	public static final LatencyHistogram CLASSIFY = new LatencyHistogram();
+	public static final LatencyHistogram QUEUE = new LatencyHistogram();
+	public static final LatencyHistogram APPLY = new LatencyHistogram();
+	public static final LatencyHistogram TOTAL = new LatencyHistogram();
+
+	private static boolean registered = false;
+
+	/**
+	 * register
+	 * makes the latencies available over JMX (once)
+	 */
+	public static synchronized void register() {
+		if (registered)
+			return;
+		registered = true;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(new GestureLatency(), new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			System.out.println("ERROR: could not register " + OBJECT_NAME + ": " + e.getMessage());
+		}
+	}
+
+	private static double micros(long nanos) {
+		return nanos / 1000.0;
+	}
+
+	@Override
+	public long getEventCount() {
+		return TOTAL.getCount();
+	}
+
+	@Override
+	public double getTotalP50Micros() {
+		return micros(TOTAL.getValueAtPercentile(50));
+	}
+
+	@Override
+	public double getTotalP99Micros() {
+		return micros(TOTAL.getValueAtPercentile(99));
+	}
+
+	@Override
+	public double getTotalMaxMicros() {
+		return micros(TOTAL.getMax());
+	}
+
+	@Override
+	public double getClassifyP50Micros() {
+		return micros(CLASSIFY.getValueAtPercentile(50));
+	}
+
+	@Override
+	public double getClassifyP99Micros() {
+		return micros(CLASSIFY.getValueAtPercentile(99));
+	}
+
+	@Override
+	public double getQueueP50Micros() {
+		return micros(QUEUE.getValueAtPercentile(50));
+	}
+
+	@Override
+	public double getQueueP99Micros() {
+		return micros(QUEUE.getValueAtPercentile(99));
+	}
+
+	@Override
+	public double getApplyP50Micros() {
+		return micros(APPLY.getValueAtPercentile(50));
+	}
+
+	@Override
+	public double getApplyP99Micros() {
+		return micros(APPLY.getValueAtPercentile(99));
+	}
+
+	@Override
+	public void reset() {
+		CLASSIFY.reset();
+		QUEUE.reset();
+		APPLY.reset();
+		TOTAL.reset();
+	}
+}
@@ -0,0 +1,30 @@
+package hub;
+
+/**
+ * GestureLatencyMBean
+ * JMX view of the gesture control latencies (see GestureLatency), all in microseconds
+ */
+public interface GestureLatencyMBean {
+
+	public long getEventCount();
+
+	public double getTotalP50Micros();
+
+	public double getTotalP99Micros();
+
+	public double getTotalMaxMicros();
+
+	public double getClassifyP50Micros();
+
+	public double getClassifyP99Micros();
+
+	public double getQueueP50Micros();
+
+	public double getQueueP99Micros();
+
+	public double getApplyP50Micros();
+
+	public double getApplyP99Micros();
+
+	public void reset();
+}
@@ -0,0 +1,105 @@
+package hub;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram
+ * a fixed-size log-linear histogram of nanosecond latencies in the style of HdrHistogram: every power of two is
+ * split into 64 linear buckets, so any recorded value is reported within about 1.6% while the whole range up to
+ * hours fits in a few thousand counters. Recording is lock-free and allocation free; it is meant for one recording
+ * thread, reads (percentiles, JMX) may come from any thread
+ */
+public final class LatencyHistogram {
+
+	/*64 sub-buckets per power of two*/
+	private static final int SUB_BITS = 6;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * record
+	 * @param nanos latency, negative values count as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(index(value));
+		total.incrementAndGet();
+		sum.addAndGet(value);
+		long m = max.get();
+		while (value > m && !max.compareAndSet(m, value))
+			m = max.get();
+	}
+
+	private static int index(long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BITS;
+		int sub = (int) (value >>> shift) - SUB_COUNT;
+		return SUB_COUNT + shift * SUB_COUNT + sub;
+	}
+
+	/**
+	 * Returns the highest value that falls in the same bucket as index
+	 */
+	private static long highestValue(int index) {
+		if (index < SUB_COUNT)
+			return index;
+		int shift = (index - SUB_COUNT) / SUB_COUNT;
+		long sub = (index - SUB_COUNT) % SUB_COUNT + SUB_COUNT;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * getValueAtPercentile
+	 * @param percentile 0 to 100
+	 * @return latency in nanoseconds that the given percentage of recorded values are at or below, 0 if empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = total.get();
+		if (count == 0)
+			return 0;
+		long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= target)
+				return Math.min(highestValue(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * reset
+	 * forgets every recorded value
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		total.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	public long getCount() {
+		return total.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the mean latency in nanoseconds, 0 if empty
+	 */
+	public double getMean() {
+		long count = total.get();
+		return count == 0 ? 0 : (double) sum.get() / count;
+	}
+}
@@ -6,6 +6,9 @@ package hub;
  */
 
 import java.io.File;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
 
 import javafx.scene.media.AudioSpectrumListener;
 import javafx.scene.media.MediaPlayer;
@@ -36,6 +39,16 @@ public class SoundController {
 	private final static double minVolume = 0;
 	private final static double minBand = -24;
 	private final static double maxBand = 12;
+	private final static double speedStep = 0.01;
+	private final static double volumeStep = 0.01;
+	private final static double bandStep = 0.5;
+
+	/*Changes requested by the step methods that have not been applied to the song yet*/
+	private static final Object pendingLock = new Object();
+	private static double pendingRate, pendingVolume, pendingLow, pendingMid, pendingHigh;
+	/*Levels requested by the set methods (NaN if none), applied before the steps*/
+	private static double targetVolume = Double.NaN, targetLow = Double.NaN, targetMid = Double.NaN, targetHigh = Double.NaN;
+	private static KnobPanel pendingSelection = null;
 	
 	/**
 	 * Instantiates the SoundController with the app the is actually playing music
@@ -44,6 +57,7 @@ public class SoundController {
 	public SoundController(SongApp app) {
 		SoundController.app = app;
 		resetValues();
+		preloadNeighbours();
 	}
 	
 	/**
@@ -79,39 +93,38 @@ public class SoundController {
 	}
 	
 	/**
-	 * The methods below increase, decrease and set the speed, volume, bass, mid, and high values of the current song playing
+	 * The step methods below (speedUpSong, volumeUp, raiseBass...) only add to the pending change of their value;
+	 * the sum is applied by flushPendingChanges. They are only called through ControlAction, whose events the
+	 * GestureEventConsumer flushes after every batch; anything else uses the change methods, which set the value
+	 * right away
 	 */
 	
-	public static void speedUpSong() {
-		if(app != null && app.getRate() < maxSpeed) {
-			app.speedUpSong();			
-			updateKnob(speedKnob, app.getRate(), minSpeed, maxSpeed);			
+	static void speedUpSong() {
+		synchronized(pendingLock) {
+			pendingRate += speedStep;
+			pendingSelection = speedKnob;
 		}
-		updateSelection(speedKnob);
 	}
 	
-	public static void slowDownSong() {
-		if(app != null && app.getRate() > minSpeed) {
-			app.slowDownSong();
-			updateKnob(speedKnob, app.getRate(), minSpeed, maxSpeed);
+	static void slowDownSong() {
+		synchronized(pendingLock) {
+			pendingRate -= speedStep;
+			pendingSelection = speedKnob;
 		}
-		updateSelection(speedKnob);
 	}
 	
-	public static void volumeUp() {
-		if(app != null && app.getVolume() < maxVolume) {
-			app.volumeUp();
-			updateKnob(volumeKnob, app.getVolume(), minVolume, maxVolume);
+	static void volumeUp() {
+		synchronized(pendingLock) {
+			pendingVolume += volumeStep;
+			pendingSelection = volumeKnob;
 		}
-		updateSelection(volumeKnob);
 	}
 	
-	public static void volumeDown() {
-		if(app != null && app.getVolume() > minVolume) {
-			app.volumeDown();
-			updateKnob(volumeKnob, app.getVolume(), minVolume, maxVolume);			
+	static void volumeDown() {
+		synchronized(pendingLock) {
+			pendingVolume -= volumeStep;
+			pendingSelection = volumeKnob;
 		}
-		updateSelection(volumeKnob);
 	}
 	
 	public static void changeVolume(double d) {
@@ -123,18 +136,22 @@ public class SoundController {
 	}
 
     public static void mute() {
-        if(app != null) app.getMediaPlayer().setMute(true);
+        if(app != null) app.setMute(true);
     }
 
     public static void unmute() {
-        if (app != null) app.getMediaPlayer().setMute(false);
+        if (app != null) app.setMute(false);
     }
 
     public static boolean isMute() {
-        if (app != null) return app.getMediaPlayer().isMute();
+        if (app != null) return app.isMute();
         else return false;
     }
 
+    public static boolean isPlaying() {
+        return app != null && app.isPlaying();
+    }
+
 	public static void changeSpeed(double d) {
 		if(app != null && app.getRate() + d < maxSpeed && app.getRate() + d > minSpeed) {
 			app.changeSpeed(d);			
@@ -167,60 +184,212 @@ public class SoundController {
 		updateSelection(highKnob);
 	}
 
-	public static void raiseBass() {
-		if(app != null && app.getLows() < maxBand) {
-			app.raiseBass();
-			updateKnob(lowKnob, app.getLows(), minBand, maxBand);
+	static void raiseBass() {
+		synchronized(pendingLock) {
+			pendingLow += bandStep;
+			pendingSelection = lowKnob;
 		}
-		updateSelection(lowKnob);
 	}
 	
-	public static void lowerBass() {
-		if(app != null && app.getLows() > minBand) {
-			app.lowerBass();
-			updateKnob(lowKnob, app.getLows(), minBand, maxBand);
+	static void lowerBass() {
+		synchronized(pendingLock) {
+			pendingLow -= bandStep;
+			pendingSelection = lowKnob;
 		}
-		updateSelection(lowKnob);
 	}
 	
-	public static void raiseMid() {
-		if(app != null && app.getMids() < maxBand) {
-			app.raiseMid();
-			updateKnob(midKnob, app.getMids(), minBand, maxBand);
+	static void raiseMid() {
+		synchronized(pendingLock) {
+			pendingMid += bandStep;
+			pendingSelection = midKnob;
 		}
-		updateSelection(midKnob);
 	}
 	
-	public static void lowerMid() {
-		if(app != null && app.getMids() > minBand) {
-			app.lowerMid();
-			updateKnob(midKnob, app.getMids(), minBand, maxBand);
+	static void lowerMid() {
+		synchronized(pendingLock) {
+			pendingMid -= bandStep;
+			pendingSelection = midKnob;
 		}
-		updateSelection(midKnob);
 	}
 	
-	public static void raiseHigh() {
-		if(app != null && app.getHighs() < maxBand) {
-			app.raiseHigh();
-			updateKnob(highKnob, app.getHighs(), minBand, maxBand);
+	static void raiseHigh() {
+		synchronized(pendingLock) {
+			pendingHigh += bandStep;
+			pendingSelection = highKnob;
 		}
-		updateSelection(highKnob);
 	}
 	
-	public static void lowerHigh() {
-		if(app != null && app.getHighs() > minBand) {
-			app.lowerHigh();
-			updateKnob(highKnob, app.getHighs(), minBand, maxBand);
+	static void lowerHigh() {
+		synchronized(pendingLock) {
+			pendingHigh -= bandStep;
+			pendingSelection = highKnob;
 		}
-		updateSelection(highKnob);
 	}
 	
-	private static void updateKnob(KnobPanel knob, double val, double min, double max) {
-		double rot = 224 * (min - val) / (min - max);
-		knob.setRotation(rot);
-		knob.updateUI();
+	/**
+	 * The set methods below (setVolumeLevel, setLowLevel...) request an absolute level from 0 (minimum) to 1 (maximum);
+	 * like the steps, only the latest request is applied by flushPendingChanges
+	 */
+
+	static void setVolumeLevel(double level) {
+		synchronized(pendingLock) {
+			targetVolume = minVolume + clamp(level, 0, 1) * (maxVolume - minVolume);
+			pendingSelection = volumeKnob;
+		}
+	}
+
+	static void setLowLevel(double level) {
+		synchronized(pendingLock) {
+			targetLow = minBand + clamp(level, 0, 1) * (maxBand - minBand);
+			pendingSelection = lowKnob;
+		}
+	}
+
+	static void setMidLevel(double level) {
+		synchronized(pendingLock) {
+			targetMid = minBand + clamp(level, 0, 1) * (maxBand - minBand);
+			pendingSelection = midKnob;
+		}
+	}
+
+	static void setHighLevel(double level) {
+		synchronized(pendingLock) {
+			targetHigh = minBand + clamp(level, 0, 1) * (maxBand - minBand);
+			pendingSelection = highKnob;
+		}
 	}
 
+	/**
+	 * Applies everything the step and set methods have requested since the last flush as a single clamped change per
+	 * value, so a gesture held for many frames costs one player update and one knob repaint per flush instead of one
+	 * per frame
+	 */
+	static void flushPendingChanges() {
+		double rate, volume, low, mid, high;
+		double volumeLevel, lowLevel, midLevel, highLevel;
+		KnobPanel selection;
+		synchronized(pendingLock) {
+			rate = pendingRate;
+			volume = pendingVolume;
+			low = pendingLow;
+			mid = pendingMid;
+			high = pendingHigh;
+			volumeLevel = targetVolume;
+			lowLevel = targetLow;
+			midLevel = targetMid;
+			highLevel = targetHigh;
+			selection = pendingSelection;
+			pendingRate = pendingVolume = pendingLow = pendingMid = pendingHigh = 0;
+			targetVolume = targetLow = targetMid = targetHigh = Double.NaN;
+			pendingSelection = null;
+		}
+
+		if(app != null) {
+			if(rate != 0) {
+				double d = clamp(app.getRate() + rate, minSpeed, maxSpeed) - app.getRate();
+				if(d != 0) {
+					app.changeSpeed(d);
+					updateKnob(speedKnob, app.getRate(), minSpeed, maxSpeed);
+				}
+			}
+			if(volume != 0 || !Double.isNaN(volumeLevel)) {
+				double from = Double.isNaN(volumeLevel) ? app.getVolume() : volumeLevel;
+				double d = clamp(from + volume, minVolume, maxVolume) - app.getVolume();
+				if(d != 0) {
+					app.changeVolume(d);
+					updateKnob(volumeKnob, app.getVolume(), minVolume, maxVolume);
+				}
+			}
+			if(low != 0 || !Double.isNaN(lowLevel)) {
+				double from = Double.isNaN(lowLevel) ? app.getLows() : lowLevel;
+				double d = clamp(from + low, minBand, maxBand) - app.getLows();
+				if(d != 0) {
+					app.changeBass(d);
+					updateKnob(lowKnob, app.getLows(), minBand, maxBand);
+				}
+			}
+			if(mid != 0 || !Double.isNaN(midLevel)) {
+				double from = Double.isNaN(midLevel) ? app.getMids() : midLevel;
+				double d = clamp(from + mid, minBand, maxBand) - app.getMids();
+				if(d != 0) {
+					app.changeMid(d);
+					updateKnob(midKnob, app.getMids(), minBand, maxBand);
+				}
+			}
+			if(high != 0 || !Double.isNaN(highLevel)) {
+				double from = Double.isNaN(highLevel) ? app.getHighs() : highLevel;
+				double d = clamp(from + high, minBand, maxBand) - app.getHighs();
+				if(d != 0) {
+					app.changeHigh(d);
+					updateKnob(highKnob, app.getHighs(), minBand, maxBand);
+				}
+			}
+		}
+		if(selection != null)
+			updateSelection(selection);
+	}
+
+	private static double clamp(double val, double min, double max) {
+		return Math.max(min, Math.min(max, val));
+	}
+
+	/**
+	 * Plays the next song in the song list from the start
+	 */
+	public static void playNextSong() {
+		File nextSong = SongList.getNextSong();
+		if (nextSong != null){
+			stopSong();
+			setSong(nextSong);
+			resetValues();
+			playSong();
+		}
+	}
+
+	/**
+	 * Restarts the current song if it has been playing for more than three seconds,
+	 * otherwise plays the previous song in the song list
+	 */
+	public static void playPreviousSong() {
+		if (getCurrentTime() > 3000){
+			seekTo(0.0);
+		}
+		else {
+			File previousSong = SongList.getPreviousSong();
+			if (previousSong != null){
+				stopSong();
+				setSong(previousSong);
+				resetValues();
+				playSong();
+			}
+		}
+	}
+
+	/**
+	 * Knobs are Swing components, so they are only touched on the event dispatch thread
+	 */
+	private static void updateKnob(final KnobPanel knob, double val, double min, double max) {
+		final double rot = 224 * (min - val) / (min - max);
+		runOnSwingThread(new Runnable() {
+			@Override
+			public void run() {
+				knob.setRotation(rot);
+				knob.repaint();
+			}
+		});
+	}
+
+	private static void runOnSwingThread(Runnable r) {
+		if (SwingUtilities.isEventDispatchThread())
+			r.run();
+		else
+			SwingUtilities.invokeLater(r);
+	}
+
+    /**
+     * getMediaPlayer
+     * @return the MediaPlayer of the current song, null if the song is played by another PlaybackEngine
+     */
     public static MediaPlayer getMediaPlayer() {
         return app.getMediaPlayer();
     }
@@ -245,7 +414,26 @@ public class SoundController {
 	}
 	
 	public static void setSong(File file) {
-		if(app != null) app.setSong(file);
+		if(app != null) {
+			app.setSong(file);
+			preloadNeighbours();
+		}
+	}
+
+	/**
+	 * Opens the songs before and after the current one in the song list in the background, so skipping to them
+	 * does not wait for their files to open. The song list is read here, on the caller's thread; the background
+	 * task only opens the files
+	 */
+	private static void preloadNeighbours() {
+		final SongApp songApp = app;
+		final List<File> neighbours = SongList.getNeighbourSongs();
+		BackgroundTasks.execute(new Runnable() {
+			@Override
+			public void run() {
+				songApp.preload(neighbours);
+			}
+		});
 	}
 	
 	public static void setAudioSpectrumListener(AudioSpectrumListener asl) {
@@ -272,10 +460,20 @@ public class SoundController {
         return 0.0;
     }
 
-	public static void updateSelection(KnobPanel curr) {
-		if(selected != null) selected.deselect();
-		curr.select();
-		selected = curr;
+	public static void updateSelection(final KnobPanel curr) {
+		runOnSwingThread(new Runnable() {
+			@Override
+			public void run() {
+				if(curr == null || selected == curr) return;
+				if(selected != null) selected.deselect();
+				curr.select();
+				selected = curr;
+			}
+		});
+	}
+
+	public static void updateSelection(KnobType type) {
+		updateSelection(SongPanel.getKnobPanel(type));
 	}
 
 }